@@ -38,17 +38,62 @@ CREATE TABLE IF NOT EXISTS life_records (
     amount DECIMAL(10,2) DEFAULT NULL COMMENT '金额(仅消费类型)',
     tags TEXT COMMENT '标签列表, JSON格式存储',
     emotion_score INT DEFAULT NULL COMMENT '情绪分数(-10到10)',
-    record_time DATETIME DEFAULT NULL COMMENT '记录时间',
+    record_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记录时间',
+    record_date DATE GENERATED ALWAYS AS (DATE(record_time)) STORED COMMENT '记录日期(由record_time生成), 按天查询时使用',
+    parse_status VARCHAR(20) NOT NULL DEFAULT 'done' COMMENT '解析状态: pending(解析中), provisional(本地规则结果，待LLM升级), done(已完成), failed(失败)',
+    parse_source VARCHAR(16) DEFAULT NULL COMMENT '解析来源: llm(LLM), local(本地规则), model(本地分类器), user(用户修改); 本地分类器只用llm记录训练',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (id),
-    INDEX idx_user_id (user_id),
     INDEX idx_record_type (record_type),
     INDEX idx_record_time (record_time),
     INDEX idx_created_at (created_at),
+    INDEX idx_parse_status (parse_status),
+    INDEX idx_parse_source_updated (parse_source, updated_at, id),
+    INDEX idx_user_record_time (user_id, record_time, id),
+    INDEX idx_user_type_time (user_id, record_type, record_time, amount, emotion_score),
+    INDEX idx_user_record_date (user_id, record_date),
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='生活记录表';
 
+-- ============================================
+-- 生活记录日统计表 (life_record_daily_stats)
+-- 按 用户 + 日期 + 记录类型 汇总 life_records，随记录增删改同步更新，统计查询按天数而非记录数计算
+-- ============================================
+CREATE TABLE IF NOT EXISTS life_record_daily_stats (
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    stat_date DATE NOT NULL COMMENT '统计日期(记录时间所在日)',
+    record_type VARCHAR(50) NOT NULL COMMENT '记录类型, 未解析的记录为 unknown',
+    record_count INT NOT NULL DEFAULT 0 COMMENT '记录条数',
+    amount_sum DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '金额合计',
+    emotion_sum INT NOT NULL DEFAULT 0 COMMENT '情绪分数合计',
+    emotion_count INT NOT NULL DEFAULT 0 COMMENT '有情绪分数的记录条数',
+    PRIMARY KEY (user_id, stat_date, record_type),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='生活记录日统计表';
+
+-- ============================================
+-- 标签字典表 (tags) 和记录标签关联表 (record_tags)
+-- 由 life_records.tags (JSON) 拆分而来，随记录写入同步维护，按标签查找和统计走索引
+-- ============================================
+CREATE TABLE IF NOT EXISTS tags (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    name VARCHAR(100) NOT NULL COMMENT '标签名(不区分大小写唯一)',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_name (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='标签字典表';
+
+CREATE TABLE IF NOT EXISTS record_tags (
+    record_id BIGINT NOT NULL COMMENT '记录ID,关联life_records表',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    tag_id BIGINT NOT NULL COMMENT '标签ID,关联tags表',
+    PRIMARY KEY (record_id, tag_id),
+    INDEX idx_user_tag (user_id, tag_id, record_id),
+    INDEX idx_tag (tag_id),
+    FOREIGN KEY (record_id) REFERENCES life_records(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='记录标签关联表';
+
 -- ============================================
 -- LLM配置表 (llm_config)
 -- 存储大模型API配置信息
@@ -61,6 +106,7 @@ CREATE TABLE IF NOT EXISTS llm_config (
     model VARCHAR(100) NOT NULL COMMENT '模型名称, 例如: gpt-3.5-turbo',
     temperature DOUBLE DEFAULT 0.7 COMMENT '温度参数(0-2), 控制输出随机性',
     use_local_rules TINYINT(1) DEFAULT 0 COMMENT '是否使用本地规则: 0-否, 1-是',
+    local_confidence_threshold DOUBLE DEFAULT 0.8 COMMENT '本地规则置信度阈值(0-1), 达到阈值不再调用LLM, NULL或大于1表示始终调用LLM',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (id)
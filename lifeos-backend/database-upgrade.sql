@@ -0,0 +1,110 @@
+-- LifeOS Database Upgrade Script
+-- 用于升级已有数据库，新安装直接执行 database-init.sql 即可
+-- 使用方法: mysql -u root -p lifeos < database-upgrade.sql
+-- 各段按版本顺序排列，已执行过的段无需重复执行
+
+USE lifeos;
+
+-- ============================================
+-- 异步记录: life_records 增加解析状态
+-- ============================================
+ALTER TABLE life_records
+    ADD COLUMN parse_status VARCHAR(20) NOT NULL DEFAULT 'done' COMMENT '解析状态: pending(解析中), done(已完成), failed(失败)' AFTER record_time,
+    ADD INDEX idx_parse_status (parse_status);
+
+-- ============================================
+-- 限时解析: parse_status 增加 provisional（本地规则结果，待LLM升级）
+-- ============================================
+ALTER TABLE life_records
+    MODIFY COLUMN parse_status VARCHAR(20) NOT NULL DEFAULT 'done' COMMENT '解析状态: pending(解析中), provisional(本地规则结果，待LLM升级), done(已完成), failed(失败)';
+
+-- ============================================
+-- 分级解析: llm_config 增加本地规则置信度阈值
+-- ============================================
+ALTER TABLE llm_config
+    ADD COLUMN local_confidence_threshold DOUBLE DEFAULT 0.8 COMMENT '本地规则置信度阈值(0-1), 达到阈值不再调用LLM, NULL或大于1表示始终调用LLM' AFTER use_local_rules;
+
+-- ============================================
+-- 日统计: 新增 life_record_daily_stats 并由已有记录回填
+-- ============================================
+CREATE TABLE IF NOT EXISTS life_record_daily_stats (
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    stat_date DATE NOT NULL COMMENT '统计日期(记录时间所在日)',
+    record_type VARCHAR(50) NOT NULL COMMENT '记录类型, 未解析的记录为 unknown',
+    record_count INT NOT NULL DEFAULT 0 COMMENT '记录条数',
+    amount_sum DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '金额合计',
+    emotion_sum INT NOT NULL DEFAULT 0 COMMENT '情绪分数合计',
+    emotion_count INT NOT NULL DEFAULT 0 COMMENT '有情绪分数的记录条数',
+    PRIMARY KEY (user_id, stat_date, record_type),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='生活记录日统计表';
+
+DELETE FROM life_record_daily_stats;
+INSERT INTO life_record_daily_stats (user_id, stat_date, record_type, record_count, amount_sum, emotion_sum, emotion_count)
+SELECT user_id, DATE(COALESCE(record_time, created_at)), COALESCE(record_type, 'unknown'),
+       COUNT(*), COALESCE(SUM(amount), 0), COALESCE(SUM(emotion_score), 0), COUNT(emotion_score)
+FROM life_records
+GROUP BY user_id, DATE(COALESCE(record_time, created_at)), COALESCE(record_type, 'unknown');
+
+-- ============================================
+-- 记录分页: life_records 增加 (user_id, record_time, id) 索引，补齐缺失的记录时间后改为 NOT NULL
+-- ============================================
+UPDATE life_records SET record_time = COALESCE(created_at, NOW()) WHERE record_time IS NULL;
+ALTER TABLE life_records
+    MODIFY COLUMN record_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记录时间',
+    ADD INDEX idx_user_record_time (user_id, record_time, id);
+
+-- ============================================
+-- 复合索引: life_records 增加按类型的覆盖索引和生成列 record_date
+-- (user_id, record_time) 已由 idx_user_record_time 覆盖，idx_user_id 是其前缀，删除
+-- ============================================
+ALTER TABLE life_records
+    ADD COLUMN record_date DATE GENERATED ALWAYS AS (DATE(record_time)) STORED COMMENT '记录日期(由record_time生成), 按天查询时使用' AFTER record_time,
+    ADD INDEX idx_user_type_time (user_id, record_type, record_time, amount, emotion_score),
+    ADD INDEX idx_user_record_date (user_id, record_date),
+    DROP INDEX idx_user_id;
+
+-- ============================================
+-- 标签索引: 新增 tags 字典表和 record_tags 关联表
+-- 已有记录的标签由后端后台任务回填（lifeos.record-tags.backfill-*）
+-- ============================================
+CREATE TABLE IF NOT EXISTS tags (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    name VARCHAR(100) NOT NULL COMMENT '标签名(不区分大小写唯一)',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_name (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='标签字典表';
+
+CREATE TABLE IF NOT EXISTS record_tags (
+    record_id BIGINT NOT NULL COMMENT '记录ID,关联life_records表',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    tag_id BIGINT NOT NULL COMMENT '标签ID,关联tags表',
+    PRIMARY KEY (record_id, tag_id),
+    INDEX idx_user_tag (user_id, tag_id, record_id),
+    INDEX idx_tag (tag_id),
+    FOREIGN KEY (record_id) REFERENCES life_records(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='记录标签关联表';
+
+-- ============================================
+-- 解析来源: life_records 增加 parse_source，本地分类器只用 LLM 标注的记录训练
+-- 已有记录按标签回填来源（启发式）：
+--   升级前的本地规则结果总带有英文基础标签 Expense/Mood/Event/Diary 之一，解析失败的兜底结果为 Uncategorized/未分类，
+--   其余已完成、有类型的记录视为 LLM 标注，回填为 llm；不满足条件的记录保持 NULL，不参与训练。
+--   本地分类器与本段同版本上线，升级前的数据中没有分类器结果
+-- ============================================
+ALTER TABLE life_records
+    ADD COLUMN parse_source VARCHAR(16) DEFAULT NULL COMMENT '解析来源: llm(LLM), local(本地规则), model(本地分类器), user(用户修改); 本地分类器只用llm记录训练' AFTER parse_status,
+    ADD INDEX idx_parse_source_updated (parse_source, updated_at, id);
+
+UPDATE life_records SET parse_source = 'llm'
+WHERE parse_source IS NULL
+  AND parse_status = 'done'
+  AND record_type IS NOT NULL
+  AND tags IS NOT NULL AND tags NOT IN ('', '[]')
+  AND tags NOT LIKE '%"Expense"%'
+  AND tags NOT LIKE '%"Mood"%'
+  AND tags NOT LIKE '%"Event"%'
+  AND tags NOT LIKE '%"Diary"%'
+  AND tags NOT LIKE '%"Uncategorized"%'
+  AND tags NOT LIKE '%"未分类"%';
@@ -1,5 +1,6 @@
 package com.lifeos.config;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lifeos.entity.AdminUser;
 import jakarta.annotation.PostConstruct;
@@ -20,7 +21,8 @@ public class AdminConfig {
         try {
             ObjectMapper mapper = new ObjectMapper();
             ClassPathResource resource = new ClassPathResource("admin-config.json");
-            Map<String, Map<String, Object>> config = mapper.readValue(resource.getInputStream(), Map.class);
+            Map<String, Map<String, Object>> config = mapper.readValue(resource.getInputStream(),
+                new TypeReference<Map<String, Map<String, Object>>>() {});
             
             for (Map.Entry<String, Map<String, Object>> entry : config.entrySet()) {
                 Map<String, Object> userData = entry.getValue();
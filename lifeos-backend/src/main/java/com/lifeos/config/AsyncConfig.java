@@ -0,0 +1,89 @@
+package com.lifeos.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    /**
+     * 后台解析线程池：有界队列，满载时由提交方处理拒绝（见 TrackService.processTextAsync）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor parseExecutor(
+            @Value("${lifeos.async.parse.core-size:4}") int coreSize,
+            @Value("${lifeos.async.parse.max-size:16}") int maxSize,
+            @Value("${lifeos.async.parse.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("lifeos-parse-");
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * /api/track 限时解析线程池（见 TrackService.parseWithinBudget）：请求线程在预算内等待结果，排队只会耗掉预算，
+     * 因此不排队，满载时拒绝，由请求线程直接解析；与后台解析线程池分开，避免互相占满
+     */
+    @Bean
+    public ThreadPoolTaskExecutor speculativeParseExecutor(
+            @Value("${lifeos.async.speculative-parse.core-size:4}") int coreSize,
+            @Value("${lifeos.async.speculative-parse.max-size:32}") int maxSize,
+            @Value("${lifeos.async.speculative-parse.queue-capacity:0}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("lifeos-speculative-");
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * SSE 流式响应线程池：每个线程在整个流式响应期间持有一条 LLM 连接，满载时直接拒绝新的流
+     */
+    @Bean
+    public ThreadPoolTaskExecutor streamExecutor(
+            @Value("${lifeos.async.stream.core-size:4}") int coreSize,
+            @Value("${lifeos.async.stream.max-size:32}") int maxSize,
+            @Value("${lifeos.async.stream.queue-capacity:0}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("lifeos-stream-");
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * LLM 微批发送线程池：每个线程发送一个批次（见 LlmParseBatcher），满载时拒绝，调用方回退本地规则
+     */
+    @Bean
+    public ThreadPoolTaskExecutor llmBatchExecutor(
+            @Value("${lifeos.async.llm-batch.core-size:2}") int coreSize,
+            @Value("${lifeos.async.llm-batch.max-size:8}") int maxSize,
+            @Value("${lifeos.async.llm-batch.queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("lifeos-llm-batch-");
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,39 @@
+package com.lifeos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * LLM 提供商熔断配置，统计窗口按最近 N 次调用计算
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "lifeos.llm.circuit-breaker")
+public class LlmCircuitBreakerProperties {
+
+    private boolean enabled = true;
+
+    /** 滑动窗口大小（最近多少次调用） */
+    private int windowSize = 20;
+
+    /** 窗口内至少有多少次调用才开始计算失败率 */
+    private int minimumCalls = 10;
+
+    /** 失败率阈值（百分比），达到即熔断 */
+    private int failureRateThreshold = 50;
+
+    /** 超过该耗时的调用记为慢调用 */
+    private Duration slowCallDuration = Duration.ofSeconds(10);
+
+    /** 慢调用率阈值（百分比），达到即熔断 */
+    private int slowCallRateThreshold = 80;
+
+    /** 熔断持续时间，之后进入半开状态放行探测请求 */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    /** 半开状态放行的探测请求数，全部成功才恢复 */
+    private int halfOpenCalls = 3;
+}
@@ -0,0 +1,39 @@
+package com.lifeos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LLM 出站 HTTP 客户端配置，providers 下可按提供商覆盖默认超时
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "lifeos.llm.http")
+public class LlmHttpProperties {
+
+    /** 是否优先使用 HTTP/2（服务端不支持时自动回退 HTTP/1.1） */
+    private boolean http2 = true;
+
+    /** 建立连接（含 TLS 握手）超时 */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /** 从发出请求到收到响应头的时限，不限制读取响应体 */
+    private Duration requestTimeout = Duration.ofSeconds(60);
+
+    /** 单次请求的总时限，含读取响应体和 SSE 流；超时后关闭响应流 */
+    private Duration deadline = Duration.ofSeconds(120);
+
+    private Map<String, Timeouts> providers = new HashMap<>();
+
+    @Data
+    public static class Timeouts {
+        private Duration connectTimeout;
+        private Duration requestTimeout;
+        private Duration deadline;
+    }
+}
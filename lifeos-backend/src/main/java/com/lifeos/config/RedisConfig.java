@@ -9,6 +9,7 @@ import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 import java.time.Duration;
 
@@ -45,4 +46,16 @@ public class RedisConfig {
         }
         return new StringRedisTemplate(connectionFactory);
     }
+
+    /**
+     * Redis 发布/订阅监听容器，用于节点间的变更通知
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // Redis 不可用时后台定期重连，不阻塞启动
+        container.setRecoveryInterval(10000L);
+        return container;
+    }
 }
@@ -2,7 +2,7 @@ package com.lifeos.controller;
 
 import com.lifeos.dto.ApiResponse;
 import com.lifeos.entity.LlmConfig;
-import com.lifeos.mapper.LlmConfigMapper;
+import com.lifeos.service.LlmConfigService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -12,12 +12,12 @@ import org.springframework.web.bind.annotation.*;
 public class LlmConfigController {
 
     @Autowired
-    private LlmConfigMapper llmConfigMapper;
+    private LlmConfigService llmConfigService;
 
     @GetMapping("/llm-config")
     public ApiResponse<LlmConfig> getConfig() {
         try {
-            LlmConfig config = llmConfigMapper.findLatest();
+            LlmConfig config = llmConfigService.getActiveConfig();
             if (config == null) {
                 // 返回成功但 data 为 null，表示没有配置
                 return ApiResponse.success(null);
@@ -41,14 +41,7 @@ public class LlmConfigController {
     @PostMapping("/llm-config")
     public ApiResponse<LlmConfig> saveConfig(@RequestBody LlmConfig config) {
         try {
-            LlmConfig existing = llmConfigMapper.findLatest();
-            if (existing != null) {
-                config.setId(existing.getId());
-                llmConfigMapper.update(config);
-            } else {
-                llmConfigMapper.insert(config);
-            }
-            return ApiResponse.success(config);
+            return ApiResponse.success(llmConfigService.save(config));
         } catch (Exception e) {
             return ApiResponse.error("保存配置失败: " + e.getMessage());
         }
@@ -57,7 +50,7 @@ public class LlmConfigController {
     @DeleteMapping("/llm-config")
     public ApiResponse<Void> deleteConfig() {
         try {
-            llmConfigMapper.deleteAll();
+            llmConfigService.delete();
             return ApiResponse.success(null);
         } catch (Exception e) {
             return ApiResponse.error("删除配置失败: " + e.getMessage());
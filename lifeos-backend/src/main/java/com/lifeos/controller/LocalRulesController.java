@@ -0,0 +1,30 @@
+package com.lifeos.controller;
+
+import com.lifeos.dto.ApiResponse;
+import com.lifeos.service.LocalKeywordEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/local-rules")
+@CrossOrigin(origins = "*")
+public class LocalRulesController {
+
+    @Autowired
+    private LocalKeywordEngine localKeywordEngine;
+
+    /**
+     * 重新加载本地规则关键词词典
+     */
+    @PostMapping("/reload")
+    public ApiResponse<Map<String, Object>> reload() {
+        try {
+            localKeywordEngine.reload();
+            return ApiResponse.success(Map.of("keywordCount", localKeywordEngine.keywordCount()));
+        } catch (Exception e) {
+            return ApiResponse.error("重新加载本地规则失败: " + e.getMessage());
+        }
+    }
+}
@@ -1,22 +1,40 @@
 package com.lifeos.controller;
 
 import com.lifeos.dto.ApiResponse;
+import com.lifeos.dto.RecordPage;
+import com.lifeos.dto.TrackBatchRequest;
 import com.lifeos.dto.TrackRequest;
 import com.lifeos.entity.LifeRecord;
+import com.lifeos.entity.Tag;
+import com.lifeos.service.RecordTagService;
 import com.lifeos.service.TrackService;
 import com.lifeos.service.QueryService;
 import com.lifeos.service.ReportService;
 import com.lifeos.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*")
 public class TrackController {
 
+    private static final int MAX_BATCH_SIZE = 200;
+    private static final long STREAM_TIMEOUT_MS = 180_000L;
+
     @Autowired
     private TrackService trackService;
 
@@ -26,9 +44,16 @@ public class TrackController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private RecordTagService recordTagService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    @Qualifier("streamExecutor")
+    private ThreadPoolTaskExecutor streamExecutor;
+
     private Long getUserIdFromHeader(String authHeader) {
         if (authHeader == null || authHeader.isEmpty()) {
             return null;
@@ -69,20 +94,121 @@ public class TrackController {
         }
     }
 
-    @GetMapping("/records")
-    public ApiResponse<List<LifeRecord>> getRecords(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+    @PostMapping("/track/async")
+    public ResponseEntity<ApiResponse<LifeRecord>> trackAsync(@RequestBody TrackRequest request,
+                                                              @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            Long userId = getUserIdFromHeader(authHeader);
+            if (userId == null) {
+                return ResponseEntity.ok(ApiResponse.error("请先登录"));
+            }
+            if (request.getText() == null || request.getText().trim().isEmpty()) {
+                return ResponseEntity.ok(ApiResponse.error("记录内容不能为空"));
+            }
+            LifeRecord record = trackService.processTextAsync(request.getText(), userId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success("已接收，正在解析", record));
+        } catch (Exception e) {
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/track/batch")
+    public ApiResponse<List<LifeRecord>> trackBatch(@RequestBody TrackBatchRequest request,
+                                                    @RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
             Long userId = getUserIdFromHeader(authHeader);
             if (userId == null) {
                 return ApiResponse.error("请先登录");
             }
-            List<LifeRecord> records = trackService.getRecordsByUserId(userId);
+            if (request.getTexts() == null || request.getTexts().isEmpty()) {
+                return ApiResponse.error("记录内容不能为空");
+            }
+            if (request.getTexts().size() > MAX_BATCH_SIZE) {
+                return ApiResponse.error("单次最多提交" + MAX_BATCH_SIZE + "条记录");
+            }
+            for (int i = 0; i < request.getTexts().size(); i++) {
+                String text = request.getTexts().get(i);
+                if (text == null || text.trim().isEmpty()) {
+                    return ApiResponse.error("第" + (i + 1) + "条记录内容不能为空");
+                }
+            }
+            List<LifeRecord> records = trackService.processBatch(request.getTexts(), userId);
             return ApiResponse.success(records);
         } catch (Exception e) {
             return ApiResponse.error(e.getMessage());
         }
     }
 
+    /**
+     * 分页获取记录：不带 cursor 返回第一页，之后传回上一页的 nextCursor；size 不传时使用 lifeos.records.page-size
+     */
+    @GetMapping("/records")
+    public ApiResponse<RecordPage> getRecords(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer size,
+                                              @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            Long userId = getUserIdFromHeader(authHeader);
+            if (userId == null) {
+                return ApiResponse.error("请先登录");
+            }
+            return ApiResponse.success(trackService.getRecordPage(userId, cursor, size));
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 当前用户的标签及各标签记录数，按记录数倒序
+     */
+    @GetMapping("/tags")
+    public ApiResponse<List<Tag>> getTags(@RequestParam(defaultValue = "50") int limit,
+                                          @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            Long userId = getUserIdFromHeader(authHeader);
+            if (userId == null) {
+                return ApiResponse.error("请先登录");
+            }
+            return ApiResponse.success(recordTagService.tagCounts(userId, Math.max(1, Math.min(limit, 500))));
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 当前用户带某标签的记录
+     */
+    @GetMapping("/tags/records")
+    public ApiResponse<List<LifeRecord>> getRecordsByTag(@RequestParam String name,
+                                                         @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            Long userId = getUserIdFromHeader(authHeader);
+            if (userId == null) {
+                return ApiResponse.error("请先登录");
+            }
+            return ApiResponse.success(recordTagService.recordsWithTag(userId, name));
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @GetMapping("/records/{id}")
+    public ApiResponse<LifeRecord> getRecord(@PathVariable Long id,
+                                             @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            Long userId = getUserIdFromHeader(authHeader);
+            if (userId == null) {
+                return ApiResponse.error("请先登录");
+            }
+            LifeRecord record = trackService.getRecord(id, userId);
+            if (record == null) {
+                return ApiResponse.error("记录不存在");
+            }
+            return ApiResponse.success(record);
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     // Admin API - get all records
     @GetMapping("/admin/records")
     public ApiResponse<List<LifeRecord>> getAllRecords(@RequestHeader(value = "Authorization", required = false) String authHeader) {
@@ -149,6 +275,16 @@ public class TrackController {
         }
     }
 
+    /**
+     * 流式查询：先推送 sql、rows 事件，再以 chunk 事件逐段推送回答
+     */
+    @PostMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamQuery(@RequestBody TrackRequest request,
+                                  @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = getUserIdFromHeader(authHeader);
+        return streamEvents(userId, onEvent -> queryService.streamQuery(request.getText(), userId, onEvent));
+    }
+
     @GetMapping("/report/weekly")
     public ApiResponse<String> getWeeklyReport(@RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
@@ -177,6 +313,62 @@ public class TrackController {
         }
     }
 
+    @GetMapping(value = "/report/weekly/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamWeeklyReport(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = getUserIdFromHeader(authHeader);
+        return streamEvents(userId, onEvent -> reportService.streamWeeklyReport(userId, chunk -> onEvent.accept("chunk", chunk)));
+    }
+
+    @GetMapping(value = "/report/monthly/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMonthlyReport(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = getUserIdFromHeader(authHeader);
+        return streamEvents(userId, onEvent -> reportService.streamMonthlyReport(userId, chunk -> onEvent.accept("chunk", chunk)));
+    }
+
+    /**
+     * 在 streamExecutor 上运行 generator，其回调的每个 (事件名, 数据) 推送为一条 SSE 事件，结束时发送 done 事件
+     */
+    private SseEmitter streamEvents(Long userId, Consumer<BiConsumer<String, Object>> generator) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        if (userId == null) {
+            sendErrorAndComplete(emitter, "请先登录");
+            return emitter;
+        }
+
+        try {
+            streamExecutor.execute(() -> {
+                try {
+                    generator.accept((name, data) -> {
+                        try {
+                            emitter.send(SseEmitter.event().name(name).data(data));
+                        } catch (IOException e) {
+                            // 客户端已断开，抛出以中止上游的流式读取
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    emitter.send(SseEmitter.event().name("done").data(""));
+                    emitter.complete();
+                } catch (UncheckedIOException e) {
+                    emitter.completeWithError(e.getCause());
+                } catch (Exception e) {
+                    sendErrorAndComplete(emitter, e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            sendErrorAndComplete(emitter, "服务繁忙，请稍后再试");
+        }
+        return emitter;
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message != null ? message : "生成失败"));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
     @GetMapping("/care")
     public ApiResponse<String> getCareMessage() {
         try {
@@ -11,6 +11,10 @@ public class AiParseResult {
     private Integer emotionScore;
     private String recordTime;
     private String summary;
+    // 本地规则解析的置信度（0-1），LLM 解析结果为 null
+    private Double confidence;
+    // 解析来源：llm / local / model，取值见 LifeRecord.PARSE_SOURCE_*，旧缓存条目为 null
+    private String source;
     
     public AiParseResult() {}
     
@@ -51,4 +55,10 @@ public class AiParseResult {
     
     public String getSummary() { return summary; }
     public void setSummary(String summary) { this.summary = summary; }
+    
+    public Double getConfidence() { return confidence; }
+    public void setConfidence(Double confidence) { this.confidence = confidence; }
+    
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
 }
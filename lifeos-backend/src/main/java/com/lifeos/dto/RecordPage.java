@@ -0,0 +1,34 @@
+package com.lifeos.dto;
+
+import com.lifeos.entity.LifeRecord;
+
+import java.util.List;
+
+/**
+ * 记录列表的一页；nextCursor 为 null 表示没有更多记录
+ */
+public class RecordPage {
+    private List<LifeRecord> items;
+    private String nextCursor;
+
+    public RecordPage(List<LifeRecord> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<LifeRecord> getItems() {
+        return items;
+    }
+
+    public void setItems(List<LifeRecord> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,17 @@
+package com.lifeos.dto;
+
+import java.util.List;
+
+public class TrackBatchRequest {
+    
+    private List<String> texts;
+    
+    public TrackBatchRequest() {}
+    
+    public TrackBatchRequest(List<String> texts) {
+        this.texts = texts;
+    }
+    
+    public List<String> getTexts() { return texts; }
+    public void setTexts(List<String> texts) { this.texts = texts; }
+}
@@ -7,6 +7,19 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 
 public class LifeRecord {
 
+    // 解析状态：异步记录先以 pending 入库，后台解析完成后更新为 done / failed；
+    // LLM 超出时间预算时先保存本地规则结果（provisional），LLM 结果到达后再升级为 done
+    public static final String PARSE_STATUS_PENDING = "pending";
+    public static final String PARSE_STATUS_PROVISIONAL = "provisional";
+    public static final String PARSE_STATUS_DONE = "done";
+    public static final String PARSE_STATUS_FAILED = "failed";
+
+    // 解析来源：本地分类器只用 LLM 标注的记录训练，避免用自己的预测训练自己
+    public static final String PARSE_SOURCE_LLM = "llm";
+    public static final String PARSE_SOURCE_LOCAL = "local";
+    public static final String PARSE_SOURCE_MODEL = "model";
+    public static final String PARSE_SOURCE_USER = "user";
+
     private Long id;
     private Long userId;
     private String content;
@@ -14,6 +27,8 @@ public class LifeRecord {
     private BigDecimal amount;
     private String tags;
     private Integer emotionScore;
+    private String parseStatus;
+    private String parseSource;
     
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime recordTime;
@@ -63,6 +78,12 @@ public class LifeRecord {
     public Integer getEmotionScore() { return emotionScore; }
     public void setEmotionScore(Integer emotionScore) { this.emotionScore = emotionScore; }
     
+    public String getParseStatus() { return parseStatus; }
+    public void setParseStatus(String parseStatus) { this.parseStatus = parseStatus; }
+    
+    public String getParseSource() { return parseSource; }
+    public void setParseSource(String parseSource) { this.parseSource = parseSource; }
+    
     public LocalDateTime getRecordTime() { return recordTime; }
     public void setRecordTime(LocalDateTime recordTime) { this.recordTime = recordTime; }
     
@@ -0,0 +1,40 @@
+package com.lifeos.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * life_record_daily_stats 的一行：某用户某天某类型记录的汇总；
+ * 也用作增量（各字段为要累加的差值）和按类型汇总的查询结果（statDate 为空）
+ */
+public class LifeRecordDailyStats {
+
+    private Long userId;
+    private LocalDate statDate;
+    private String recordType;
+    private long recordCount;
+    private BigDecimal amountSum = BigDecimal.ZERO;
+    private long emotionSum;
+    private long emotionCount;
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public LocalDate getStatDate() { return statDate; }
+    public void setStatDate(LocalDate statDate) { this.statDate = statDate; }
+
+    public String getRecordType() { return recordType; }
+    public void setRecordType(String recordType) { this.recordType = recordType; }
+
+    public long getRecordCount() { return recordCount; }
+    public void setRecordCount(long recordCount) { this.recordCount = recordCount; }
+
+    public BigDecimal getAmountSum() { return amountSum; }
+    public void setAmountSum(BigDecimal amountSum) { this.amountSum = amountSum; }
+
+    public long getEmotionSum() { return emotionSum; }
+    public void setEmotionSum(long emotionSum) { this.emotionSum = emotionSum; }
+
+    public long getEmotionCount() { return emotionCount; }
+    public void setEmotionCount(long emotionCount) { this.emotionCount = emotionCount; }
+}
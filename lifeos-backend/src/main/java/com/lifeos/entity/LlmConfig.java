@@ -11,6 +11,8 @@ public class LlmConfig {
     private String model;
     private Double temperature;
     private Boolean useLocalRules;
+    // 本地规则置信度达到该阈值时不再调用 LLM，大于 1 表示始终调用 LLM
+    private Double localConfidenceThreshold;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
@@ -39,6 +41,9 @@ public class LlmConfig {
     public Boolean getUseLocalRules() { return useLocalRules; }
     public void setUseLocalRules(Boolean useLocalRules) { this.useLocalRules = useLocalRules; }
     
+    public Double getLocalConfidenceThreshold() { return localConfidenceThreshold; }
+    public void setLocalConfidenceThreshold(Double localConfidenceThreshold) { this.localConfidenceThreshold = localConfidenceThreshold; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -0,0 +1,20 @@
+package com.lifeos.entity;
+
+/**
+ * 标签字典中的一项；recordCount 只在按标签统计记录数时有值
+ */
+public class Tag {
+
+    private Long id;
+    private String name;
+    private Long recordCount;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Long getRecordCount() { return recordCount; }
+    public void setRecordCount(Long recordCount) { this.recordCount = recordCount; }
+}
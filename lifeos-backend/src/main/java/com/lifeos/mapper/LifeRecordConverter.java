@@ -23,6 +23,11 @@ public interface LifeRecordConverter {
 
     @Mapping(source = "tags", target = "tags", qualifiedByName = "listToJson")
     @Mapping(source = "amount", target = "amount", qualifiedByName = "doubleToBigDecimal")
+    // 以下字段不在 DTO 中：userId 由调用方设置，originalText 是 content 的别名，解析状态和来源由服务端决定
+    @Mapping(target = "userId", ignore = true)
+    @Mapping(target = "originalText", ignore = true)
+    @Mapping(target = "parseStatus", ignore = true)
+    @Mapping(target = "parseSource", ignore = true)
     LifeRecord toEntity(LifeRecordDTO dto);
 
     List<LifeRecordDTO> toDTOList(List<LifeRecord> entities);
@@ -0,0 +1,58 @@
+package com.lifeos.mapper;
+
+import com.lifeos.entity.LifeRecordDailyStats;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface LifeRecordDailyStatsMapper {
+
+    /**
+     * 把一条增量累加到对应的 (用户, 日期, 类型) 行上，行不存在时插入
+     */
+    @Insert("INSERT INTO life_record_daily_stats (user_id, stat_date, record_type, record_count, amount_sum, emotion_sum, emotion_count) " +
+            "VALUES (#{userId}, #{statDate}, #{recordType}, #{recordCount}, #{amountSum}, #{emotionSum}, #{emotionCount}) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "record_count = record_count + VALUES(record_count), " +
+            "amount_sum = amount_sum + VALUES(amount_sum), " +
+            "emotion_sum = emotion_sum + VALUES(emotion_sum), " +
+            "emotion_count = emotion_count + VALUES(emotion_count)")
+    void applyDelta(LifeRecordDailyStats delta);
+
+    /**
+     * 按类型汇总日期区间 [fromDate, toDate] 内的统计，区间端点为 null 表示不限
+     */
+    @Select("<script>" +
+            "SELECT record_type, SUM(record_count) AS record_count, SUM(amount_sum) AS amount_sum, " +
+            "SUM(emotion_sum) AS emotion_sum, SUM(emotion_count) AS emotion_count " +
+            "FROM life_record_daily_stats WHERE user_id = #{userId} " +
+            "<if test='fromDate != null'>AND stat_date &gt;= #{fromDate} </if>" +
+            "<if test='toDate != null'>AND stat_date &lt;= #{toDate} </if>" +
+            "GROUP BY record_type HAVING SUM(record_count) &gt; 0" +
+            "</script>")
+    @Results({
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "recordCount", column = "record_count"),
+        @Result(property = "amountSum", column = "amount_sum"),
+        @Result(property = "emotionSum", column = "emotion_sum"),
+        @Result(property = "emotionCount", column = "emotion_count")
+    })
+    List<LifeRecordDailyStats> sumByType(@Param("userId") Long userId,
+                                         @Param("fromDate") LocalDate fromDate,
+                                         @Param("toDate") LocalDate toDate);
+
+    @Delete("DELETE FROM life_record_daily_stats WHERE user_id = #{userId}")
+    void deleteByUserId(Long userId);
+
+    /**
+     * 由 life_records 重新计算某用户的全部统计，调用前需先 deleteByUserId
+     */
+    @Insert("INSERT INTO life_record_daily_stats (user_id, stat_date, record_type, record_count, amount_sum, emotion_sum, emotion_count) " +
+            "SELECT user_id, DATE(COALESCE(record_time, created_at)), COALESCE(record_type, 'unknown'), " +
+            "COUNT(*), COALESCE(SUM(amount), 0), COALESCE(SUM(emotion_score), 0), COUNT(emotion_score) " +
+            "FROM life_records WHERE user_id = #{userId} " +
+            "GROUP BY user_id, DATE(COALESCE(record_time, created_at)), COALESCE(record_type, 'unknown')")
+    void insertFromRecords(Long userId);
+}
@@ -2,8 +2,10 @@ package com.lifeos.mapper;
 
 import com.lifeos.dto.LifeRecordDTO;
 import com.lifeos.entity.LifeRecord;
+import com.lifeos.entity.LifeRecordDailyStats;
 import org.apache.ibatis.annotations.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -11,11 +13,98 @@ import java.util.Map;
 @Mapper
 public interface LifeRecordMapper {
 
-    @Insert("INSERT INTO life_records (user_id, content, record_type, amount, tags, emotion_score, record_time, created_at, updated_at) " +
-            "VALUES (#{userId}, #{content}, #{recordType}, #{amount}, #{tags}, #{emotionScore}, #{recordTime}, NOW(), NOW())")
+    @Insert("INSERT INTO life_records (user_id, content, record_type, amount, tags, emotion_score, record_time, parse_status, parse_source, created_at, updated_at) " +
+            "VALUES (#{userId}, #{content}, #{recordType}, #{amount}, #{tags}, #{emotionScore}, COALESCE(#{recordTime}, NOW()), COALESCE(#{parseStatus}, 'done'), #{parseSource}, NOW(), NOW())")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     void insert(LifeRecord record);
 
+    @Insert("<script>" +
+            "INSERT INTO life_records (user_id, content, record_type, amount, tags, emotion_score, record_time, parse_source, created_at, updated_at) VALUES " +
+            "<foreach collection='list' item='r' separator=','>" +
+            "(#{r.userId}, #{r.content}, #{r.recordType}, #{r.amount}, #{r.tags}, #{r.emotionScore}, COALESCE(#{r.recordTime}, NOW()), #{r.parseSource}, NOW(), NOW())" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    void insertBatch(List<LifeRecord> records);
+
+    @Insert("INSERT INTO life_records (user_id, content, record_time, parse_status, created_at, updated_at) " +
+            "VALUES (#{userId}, #{content}, COALESCE(#{recordTime}, NOW()), #{parseStatus}, NOW(), NOW())")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    void insertPending(LifeRecord record);
+
+    @Update("UPDATE life_records SET " +
+            "record_type = #{recordType}, " +
+            "amount = #{amount}, " +
+            "tags = #{tags}, " +
+            "emotion_score = #{emotionScore}, " +
+            "record_time = #{recordTime}, " +
+            "parse_status = #{parseStatus}, " +
+            "parse_source = #{parseSource}, " +
+            "updated_at = NOW() " +
+            "WHERE id = #{id}")
+    void updateParseResult(LifeRecord record);
+
+    /**
+     * 用迟到的 LLM 结果覆盖 provisional 记录；记录已被用户修改或删除时不更新，返回 0
+     */
+    @Update("UPDATE life_records SET " +
+            "record_type = #{recordType}, " +
+            "amount = #{amount}, " +
+            "tags = #{tags}, " +
+            "emotion_score = #{emotionScore}, " +
+            "record_time = #{recordTime}, " +
+            "parse_status = 'done', " +
+            "parse_source = #{parseSource}, " +
+            "updated_at = NOW() " +
+            "WHERE id = #{id} AND parse_status = 'provisional'")
+    int upgradeProvisional(LifeRecord record);
+
+    /**
+     * 迟到的 LLM 解析最终失败时把 provisional 记录定为 done；记录已被修改或升级时不更新，返回 0
+     */
+    @Update("UPDATE life_records SET parse_status = 'done', updated_at = NOW() " +
+            "WHERE id = #{id} AND parse_status = 'provisional'")
+    int finishProvisional(Long id);
+
+    @Update("UPDATE life_records SET parse_status = #{parseStatus}, updated_at = NOW() WHERE id = #{id}")
+    void updateParseStatus(@Param("id") Long id, @Param("parseStatus") String parseStatus);
+
+    /**
+     * 按 (updated_at, id) 顺序读取由 LLM 解析完成的记录，供本地分类器增量训练；本地规则、分类器和用户修改的记录不参与。
+     * 异步和限时解析的记录在 id 更大的记录之后才完成，因此按完成时间而不是 id 推进；
+     * 最近 settleSeconds 秒内更新的记录暂不读取，避免较慢提交的事务落在已推进的水位之前
+     */
+    @Select("SELECT id, content, record_type, tags, emotion_score, updated_at FROM life_records " +
+            "WHERE parse_source = 'llm' AND parse_status = 'done' " +
+            "AND (updated_at > #{afterTime} OR (updated_at = #{afterTime} AND id > #{afterId})) " +
+            "AND updated_at < NOW() - INTERVAL #{settleSeconds} SECOND " +
+            "ORDER BY updated_at ASC, id ASC LIMIT #{limit}")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "content", column = "content"),
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "tags", column = "tags"),
+        @Result(property = "emotionScore", column = "emotion_score"),
+        @Result(property = "updatedAt", column = "updated_at")
+    })
+    List<LifeRecord> findParsedAfter(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") long afterId,
+                                     @Param("settleSeconds") long settleSeconds, @Param("limit") int limit);
+
+    @Select("SELECT * FROM life_records WHERE parse_status = #{parseStatus} ORDER BY id ASC LIMIT #{limit}")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "userId", column = "user_id"),
+        @Result(property = "content", column = "content"),
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "amount", column = "amount"),
+        @Result(property = "tags", column = "tags"),
+        @Result(property = "emotionScore", column = "emotion_score"),
+        @Result(property = "recordTime", column = "record_time"),
+        @Result(property = "createdAt", column = "created_at"),
+        @Result(property = "updatedAt", column = "updated_at")
+    })
+    List<LifeRecord> findByParseStatus(@Param("parseStatus") String parseStatus, @Param("limit") int limit);
+
     @Select("SELECT * FROM life_records ORDER BY record_time DESC")
     @Results({
         @Result(property = "id", column = "id"),
@@ -46,6 +135,34 @@ public interface LifeRecordMapper {
     })
     List<LifeRecord> findByUserId(Long userId);
 
+    /**
+     * 按 (record_time, id) 倒序的键集分页：afterTime 为 null 时取第一页，否则取严格早于 (afterTime, afterId) 的记录，
+     * 走 idx_user_record_time (user_id, record_time, id) 索引，翻页开销与页码无关
+     */
+    @Select("<script>" +
+            "SELECT * FROM life_records WHERE user_id = #{userId} " +
+            "<if test='afterTime != null'>" +
+            "AND (record_time &lt; #{afterTime} OR (record_time = #{afterTime} AND id &lt; #{afterId})) " +
+            "</if>" +
+            "ORDER BY record_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "userId", column = "user_id"),
+        @Result(property = "content", column = "content"),
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "amount", column = "amount"),
+        @Result(property = "tags", column = "tags"),
+        @Result(property = "emotionScore", column = "emotion_score"),
+        @Result(property = "recordTime", column = "record_time"),
+        @Result(property = "createdAt", column = "created_at"),
+        @Result(property = "updatedAt", column = "updated_at")
+    })
+    List<LifeRecord> findPageByUserId(@Param("userId") Long userId,
+                                      @Param("afterTime") LocalDateTime afterTime,
+                                      @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
+
     @Select("SELECT * FROM life_records WHERE id = #{id}")
     @Results({
         @Result(property = "id", column = "id"),
@@ -61,19 +178,39 @@ public interface LifeRecordMapper {
     })
     LifeRecord findById(Long id);
 
+    /**
+     * 读取并锁定记录，用于在同一事务中按修改前的值调整日统计
+     */
+    @Select("SELECT * FROM life_records WHERE id = #{id} FOR UPDATE")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "userId", column = "user_id"),
+        @Result(property = "content", column = "content"),
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "amount", column = "amount"),
+        @Result(property = "tags", column = "tags"),
+        @Result(property = "emotionScore", column = "emotion_score"),
+        @Result(property = "recordTime", column = "record_time"),
+        @Result(property = "createdAt", column = "created_at"),
+        @Result(property = "updatedAt", column = "updated_at")
+    })
+    LifeRecord findByIdForUpdate(Long id);
+
     @Update("UPDATE life_records SET " +
             "content = #{content}, " +
             "record_type = #{recordType}, " +
             "amount = #{amount}, " +
             "tags = #{tags}, " +
             "emotion_score = #{emotionScore}, " +
-            "record_time = #{recordTime}, " +
+            "record_time = COALESCE(#{recordTime}, record_time), " +
+            "parse_status = 'done', " +
+            "parse_source = 'user', " +
             "updated_at = NOW() " +
             "WHERE id = #{id} AND user_id = #{userId}")
-    void update(LifeRecord record);
+    int update(LifeRecord record);
 
     @Delete("DELETE FROM life_records WHERE id = #{id} AND user_id = #{userId}")
-    void deleteById(@Param("id") Long id, @Param("userId") Long userId);
+    int deleteById(@Param("id") Long id, @Param("userId") Long userId);
 
     @Select("SELECT COUNT(*) FROM life_records")
     long count();
@@ -117,7 +254,64 @@ public interface LifeRecordMapper {
     })
     List<LifeRecord> findByUserIdAndTimeRange(@Param("userId") Long userId, @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
 
-    @Select("SELECT * FROM life_records WHERE tags LIKE CONCAT('%', #{tag}, '%') ORDER BY record_time DESC")
+    /**
+     * 在数据库中按类型汇总时间范围内的记录（条数、金额合计、情绪分合计及条数），只返回聚合结果；
+     * 时间端点为 null 表示不限
+     */
+    @Select("<script>" +
+            "SELECT COALESCE(record_type, 'unknown') AS record_type, COUNT(*) AS record_count, " +
+            "COALESCE(SUM(amount), 0) AS amount_sum, COALESCE(SUM(emotion_score), 0) AS emotion_sum, " +
+            "COUNT(emotion_score) AS emotion_count " +
+            "FROM life_records WHERE user_id = #{userId} " +
+            "<if test='startTime != null'>AND record_time &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'>AND record_time &lt;= #{endTime} </if>" +
+            "GROUP BY COALESCE(record_type, 'unknown')" +
+            "</script>")
+    @Results({
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "recordCount", column = "record_count"),
+        @Result(property = "amountSum", column = "amount_sum"),
+        @Result(property = "emotionSum", column = "emotion_sum"),
+        @Result(property = "emotionCount", column = "emotion_count")
+    })
+    List<LifeRecordDailyStats> aggregateByType(@Param("userId") Long userId,
+                                               @Param("startTime") LocalDateTime startTime,
+                                               @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 时间范围内类型包含 typeFragment 且带标签 tag（完整匹配，不区分大小写）的记录金额合计，时间端点为 null 表示不限
+     */
+    @Select("<script>" +
+            "SELECT COALESCE(SUM(r.amount), 0) FROM tags t " +
+            "JOIN record_tags rt ON rt.tag_id = t.id AND rt.user_id = #{userId} " +
+            "JOIN life_records r ON r.id = rt.record_id " +
+            "WHERE t.name = #{tag} AND r.record_type LIKE CONCAT('%', #{typeFragment}, '%') " +
+            "<if test='startTime != null'>AND r.record_time &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'>AND r.record_time &lt;= #{endTime} </if>" +
+            "</script>")
+    BigDecimal sumAmountByTypeAndTag(@Param("userId") Long userId,
+                                     @Param("typeFragment") String typeFragment,
+                                     @Param("tag") String tag,
+                                     @Param("startTime") LocalDateTime startTime,
+                                     @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 时间范围内使用最多的标签：按时间索引取出范围内的记录，再经 record_tags 关联计数
+     */
+    @Select("SELECT t.name FROM life_records r " +
+            "JOIN record_tags rt ON rt.record_id = r.id JOIN tags t ON t.id = rt.tag_id " +
+            "WHERE r.user_id = #{userId} AND r.record_time >= #{startTime} AND r.record_time <= #{endTime} " +
+            "GROUP BY t.id, t.name ORDER BY COUNT(*) DESC, t.name LIMIT #{limit}")
+    List<String> findTopTags(@Param("userId") Long userId,
+                             @Param("startTime") LocalDateTime startTime,
+                             @Param("endTime") LocalDateTime endTime,
+                             @Param("limit") int limit);
+
+    /**
+     * 带某标签（完整匹配，不区分大小写）的记录，经 tags 字典和 record_tags 关联表走索引查找
+     */
+    @Select("SELECT r.* FROM tags t JOIN record_tags rt ON rt.tag_id = t.id JOIN life_records r ON r.id = rt.record_id " +
+            "WHERE t.name = #{tag} ORDER BY r.record_time DESC")
     @Results({
         @Result(property = "id", column = "id"),
         @Result(property = "userId", column = "user_id"),
@@ -132,6 +326,26 @@ public interface LifeRecordMapper {
     })
     List<LifeRecord> findByTag(String tag);
 
+    /**
+     * 用户带某标签（完整匹配，不区分大小写）的记录，走 record_tags 的 idx_user_tag 索引
+     */
+    @Select("SELECT r.* FROM tags t JOIN record_tags rt ON rt.tag_id = t.id AND rt.user_id = #{userId} " +
+            "JOIN life_records r ON r.id = rt.record_id " +
+            "WHERE t.name = #{tag} ORDER BY r.record_time DESC")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "userId", column = "user_id"),
+        @Result(property = "content", column = "content"),
+        @Result(property = "recordType", column = "record_type"),
+        @Result(property = "amount", column = "amount"),
+        @Result(property = "tags", column = "tags"),
+        @Result(property = "emotionScore", column = "emotion_score"),
+        @Result(property = "recordTime", column = "record_time"),
+        @Result(property = "createdAt", column = "created_at"),
+        @Result(property = "updatedAt", column = "updated_at")
+    })
+    List<LifeRecord> findByUserIdAndTag(@Param("userId") Long userId, @Param("tag") String tag);
+
     // 动态查询方法 - 后台使用，查询全部
     @Select("${sql}")
     @Results({
@@ -23,18 +23,20 @@ public interface LlmConfigMapper {
         @Result(property = "model", column = "model"),
         @Result(property = "temperature", column = "temperature"),
         @Result(property = "useLocalRules", column = "use_local_rules"),
+        @Result(property = "localConfidenceThreshold", column = "local_confidence_threshold"),
         @Result(property = "createdAt", column = "created_at"),
         @Result(property = "updatedAt", column = "updated_at")
     })
     LlmConfig findLatest();
 
-    @Insert("INSERT INTO llm_config (provider, api_key, api_url, model, temperature, use_local_rules, created_at, updated_at) " +
-            "VALUES (#{provider}, #{apiKey}, #{apiUrl}, #{model}, #{temperature}, #{useLocalRules}, NOW(), NOW())")
+    @Insert("INSERT INTO llm_config (provider, api_key, api_url, model, temperature, use_local_rules, local_confidence_threshold, created_at, updated_at) " +
+            "VALUES (#{provider}, #{apiKey}, #{apiUrl}, #{model}, #{temperature}, #{useLocalRules}, COALESCE(#{localConfidenceThreshold}, 0.8), NOW(), NOW())")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(LlmConfig config);
 
     @Update("UPDATE llm_config SET provider = #{provider}, api_key = #{apiKey}, api_url = #{apiUrl}, " +
-            "model = #{model}, temperature = #{temperature}, use_local_rules = #{useLocalRules}, updated_at = NOW() WHERE id = #{id}")
+            "model = #{model}, temperature = #{temperature}, use_local_rules = #{useLocalRules}, " +
+            "local_confidence_threshold = #{localConfidenceThreshold}, updated_at = NOW() WHERE id = #{id}")
     int update(LlmConfig config);
 
     @Delete("DELETE FROM llm_config")
@@ -0,0 +1,61 @@
+package com.lifeos.mapper;
+
+import com.lifeos.entity.Tag;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface RecordTagMapper {
+
+    @Select("<script>" +
+            "SELECT id, name FROM tags WHERE name IN " +
+            "<foreach collection='names' item='name' open='(' separator=',' close=')'>#{name}</foreach>" +
+            "</script>")
+    List<Tag> findByNames(@Param("names") Collection<String> names);
+
+    /**
+     * 把字典中还没有的标签名加入字典，已存在的（不区分大小写）忽略
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO tags (name) VALUES " +
+            "<foreach collection='names' item='name' separator=','>(#{name})</foreach>" +
+            "</script>")
+    void insertNames(@Param("names") Collection<String> names);
+
+    @Insert("<script>" +
+            "INSERT IGNORE INTO record_tags (record_id, user_id, tag_id) VALUES " +
+            "<foreach collection='tagIds' item='tagId' separator=','>(#{recordId}, #{userId}, #{tagId})</foreach>" +
+            "</script>")
+    void insertRecordTags(@Param("recordId") Long recordId, @Param("userId") Long userId,
+                          @Param("tagIds") Collection<Long> tagIds);
+
+    @Delete("DELETE FROM record_tags WHERE record_id = #{recordId}")
+    void deleteByRecordId(Long recordId);
+
+    /**
+     * 用户各标签的记录数，按记录数倒序，走 idx_user_tag 索引
+     */
+    @Select("SELECT t.id, t.name, COUNT(*) AS record_count FROM record_tags rt JOIN tags t ON t.id = rt.tag_id " +
+            "WHERE rt.user_id = #{userId} GROUP BY t.id, t.name ORDER BY record_count DESC, t.name LIMIT #{limit}")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "name", column = "name"),
+        @Result(property = "recordCount", column = "record_count")
+    })
+    List<Tag> countByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * id 在 (afterId, maxId] 内、有标签但还没有写入 record_tags 的记录，按 id 顺序读取，供回填任务使用
+     */
+    @Select("SELECT r.id FROM life_records r " +
+            "WHERE r.id > #{afterId} AND r.id <= #{maxId} AND r.tags IS NOT NULL AND r.tags <> '[]' " +
+            "AND NOT EXISTS (SELECT 1 FROM record_tags rt WHERE rt.record_id = r.id) " +
+            "ORDER BY r.id ASC LIMIT #{limit}")
+    List<Long> findUnindexedRecordIds(@Param("afterId") long afterId, @Param("maxId") long maxId,
+                                      @Param("limit") int limit);
+
+    @Select("SELECT COALESCE(MAX(id), 0) FROM life_records")
+    long maxRecordId();
+}
@@ -1,117 +1,497 @@
 package com.lifeos.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.lifeos.dto.AiParseResult;
+import com.lifeos.entity.LifeRecord;
+import com.lifeos.util.LocalTextScanner;
+import com.lifeos.util.Murmur3;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 两级缓存：进程内 Caffeine（L1，按条数和 TTL 淘汰）在前，Redis（L2）在后。
+ * Redis 可用性由后台探测维护，读写不再逐次 ping；写入和清除经 Redis 频道通知其他节点淘汰各自的 L1。
+ * 键为归一化文本的 128 位 Murmur3 哈希，解析结果以 Smile 二进制格式存储。
+ * 键中带有全局代数（generation），清空缓存只需把代数加一，旧代的键由后台 SCAN 清理或随 TTL 过期
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class CacheService {
+public class CacheService implements MessageListener {
 
     private final StringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final DataVersionService dataVersionService;
 
     private static final String CACHE_PREFIX = "lifeos:";
+    // v2：128 位哈希键 + Smile 值；旧的 lifeos:parse:* / lifeos:query:* 键不再读取，随 TTL 过期
+    private static final String KEY_PREFIX = CACHE_PREFIX + "v2:";
+    private static final String GENERATION_KEY = CACHE_PREFIX + "cache:generation";
+    private static final String REAPER_LOCK_KEY = CACHE_PREFIX + "cache:reaper";
+    private static final int REAPER_BATCH = 500;
     private static final long CACHE_TTL_MINUTES = 30;
+    private static final String INVALIDATE_CHANNEL = "lifeos:cache:invalidate";
+    // 失效消息中表示清空全部 L1 的键
+    private static final String INVALIDATE_ALL = "*";
+
+    // 本节点标识，用于忽略自己发出的失效通知
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final String HIT_COUNTER = "lifeos.parse.cache.hit";
+    private static final String ENTRY_BYTES = "lifeos.cache.entry.bytes";
+    private static final String SERDE_TIMER = "lifeos.cache.serde";
+    private static final TypeReference<List<LifeRecord>> RECORD_LIST = new TypeReference<>() {};
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // 模板缓存：金额和日期不同的同类文本（如“午饭花了30元”和“午饭花了25元”）共用一条解析结果
+    @Value("${lifeos.cache.parse-template.enabled:true}")
+    private boolean templateEnabled;
 
     /**
-     * 检查 Redis 是否可用
+     * 模板缓存条目：解析结果及写入时被替换的金额原文，命中时用于替换摘要中的金额
      */
-    private boolean isRedisAvailable() {
+    record TemplateEntry(AiParseResult result, List<String> amountSlots) {}
+
+    @Value("${lifeos.cache.l1.max-size:10000}")
+    private long l1MaxSize;
+
+    // L1 存放序列化后的字节，命中时反序列化出新对象，调用方修改结果不会影响缓存
+    @Value("${lifeos.cache.l1.ttl:5m}")
+    private Duration l1Ttl;
+
+    private Cache<String, byte[]> l1;
+
+    // 与 Spring 的 ObjectMapper 配置相同的 Smile 编解码器
+    private ObjectMapper smileMapper;
+
+    // 当前缓存代数，由 probeRedis() 从 Redis 同步，clearAllCache() 递增
+    private volatile long generation;
+
+    // 由 probeRedis() 定期更新；读写 Redis 出错时立即置为不可用，等下次探测恢复
+    private volatile boolean redisAvailable;
+
+    @PostConstruct
+    public void init() {
+        smileMapper = objectMapper.copyWith(new SmileFactory());
+        l1 = Caffeine.newBuilder()
+            .maximumSize(l1MaxSize)
+            .expireAfterWrite(l1Ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, "lifeos.l1");
         try {
-            redisTemplate.getConnectionFactory().getConnection().ping();
-            return true;
+            listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
         } catch (Exception e) {
-            return false;
+            log.warn("Failed to subscribe to cache invalidations: {}", e.getMessage());
         }
+        probeRedis();
     }
 
     /**
-     * 缓存 AI 解析结果
+     * 后台探测 Redis 是否可用，顺带同步缓存代数（弥补错过的清空通知）
      */
-    public void cacheParseResult(String text, AiParseResult result) {
+    @Scheduled(fixedDelayString = "${lifeos.cache.health-interval:PT5S}")
+    public void probeRedis() {
+        boolean available;
+        try {
+            String current = redisTemplate.opsForValue().get(GENERATION_KEY);
+            updateGeneration(current != null ? Long.parseLong(current) : 0);
+            available = true;
+        } catch (Exception e) {
+            available = false;
+        }
+        if (available != redisAvailable) {
+            log.info("Redis is now {}", available ? "available" : "unavailable");
+            if (available) {
+                // 不可用期间错过的失效通知无法补发，恢复时清空 L1
+                l1.invalidateAll();
+            }
+        }
+        redisAvailable = available;
+    }
+
+    /**
+     * 最近一次探测或读写时 Redis 是否可用；不可用期间调用方应跳过同步的 Redis 调用
+     */
+    public boolean isRedisAvailable() {
+        return redisAvailable;
+    }
+
+    private void updateGeneration(long current) {
+        if (current != generation) {
+            log.info("Cache generation changed from {} to {}", generation, current);
+            generation = current;
+            // 旧代的 L1 条目不会再被命中，直接释放
+            l1.invalidateAll();
+        }
+    }
+
+    private String key(String kind, String hash) {
+        return KEY_PREFIX + "g" + generation + ":" + kind + ":" + hash;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || NODE_ID.equals(body.substring(0, separator))) {
+            return;
+        }
+        String key = body.substring(separator + 1);
+        if (key.equals(INVALIDATE_ALL)) {
+            l1.invalidateAll();
+        } else if (key.startsWith(INVALIDATE_ALL)) {
+            // 清空通知携带新的代数：*<generation>
+            updateGeneration(Long.parseLong(key.substring(INVALIDATE_ALL.length())));
+        } else {
+            l1.invalidate(key);
+        }
+    }
+
+    /**
+     * 先查 L1，未命中再查 Redis 并回填 L1
+     */
+    private byte[] getValue(String key) {
+        byte[] value = l1.getIfPresent(key);
+        if (value != null || !isRedisAvailable()) {
+            return value;
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        try {
+            value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+        } catch (Exception e) {
+            markRedisDown(e);
+            return null;
+        }
+        if (value != null) {
+            l1.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 写入 L1 和 Redis，并通知其他节点淘汰该键的旧值
+     */
+    private void putValue(String key, byte[] value) {
+        l1.put(key, value);
         if (!isRedisAvailable()) {
-            log.debug("Redis not available, skipping cache");
             return;
         }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands().set(rawKey, value,
+                Expiration.from(CACHE_TTL_MINUTES, TimeUnit.MINUTES), RedisStringCommands.SetOption.upsert()));
+            publishInvalidation(key);
+        } catch (Exception e) {
+            markRedisDown(e);
+        }
+    }
+
+    private void publishInvalidation(String key) {
+        redisTemplate.convertAndSend(INVALIDATE_CHANNEL, NODE_ID + "|" + key);
+    }
+
+    private byte[] encode(Object value, String kind) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = smileMapper.writeValueAsBytes(value);
+        meterRegistry.timer(SERDE_TIMER, "op", "encode").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meterRegistry.summary(ENTRY_BYTES, "kind", kind).record(bytes.length);
+        return bytes;
+    }
+
+    private <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        long start = System.nanoTime();
+        T value = smileMapper.readValue(bytes, type);
+        meterRegistry.timer(SERDE_TIMER, "op", "decode").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return value;
+    }
+
+    private void markRedisDown(Exception e) {
+        if (redisAvailable) {
+            log.warn("Redis operation failed, marking unavailable until next probe: {}", e.getMessage());
+            redisAvailable = false;
+        }
+    }
+
+    /**
+     * 缓存 AI 解析结果；结果与本地提取的金额、日期一致时同时写入模板缓存
+     */
+    public void cacheParseResult(String text, AiParseResult result) {
         try {
-            String key = CACHE_PREFIX + "parse:" + hashText(text);
-            String value = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(key, value, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
-            log.debug("Cached parse result for text hash: {}", hashText(text));
-        } catch (JsonProcessingException e) {
+            String hash = hashText(text);
+            putValue(key("parse", hash), encode(result, "parse"));
+            log.debug("Cached parse result for text hash: {}", hash);
+
+            LocalTextScanner.Template template = templateOf(text);
+            if (template != null && isTemplateConsistent(result, template.values())) {
+                putValue(templateKey(template), encode(new TemplateEntry(result, template.amountSlots()), "template"));
+            }
+        } catch (IOException e) {
             log.error("Failed to cache parse result: {}", e.getMessage());
         }
     }
 
     /**
-     * 获取缓存的 AI 解析结果
+     * 获取缓存的 AI 解析结果：先按原文匹配，未命中再按模板匹配并代入本次文本的金额和时间
      */
     public AiParseResult getCachedParseResult(String text) {
-        if (!isRedisAvailable()) {
-            return null;
-        }
         try {
-            String key = CACHE_PREFIX + "parse:" + hashText(text);
-            String value = redisTemplate.opsForValue().get(key);
+            String hash = hashText(text);
+            byte[] value = getValue(key("parse", hash));
             if (value != null) {
-                log.debug("Cache hit for text hash: {}", hashText(text));
-                return objectMapper.readValue(value, AiParseResult.class);
+                log.debug("Cache hit for text hash: {}", hash);
+                meterRegistry.counter(HIT_COUNTER, "kind", "exact").increment();
+                return decode(value, AiParseResult.class);
+            }
+
+            LocalTextScanner.Template template = templateOf(text);
+            if (template != null) {
+                byte[] templateValue = getValue(templateKey(template));
+                if (templateValue != null) {
+                    log.debug("Template cache hit for text hash: {}", hash);
+                    meterRegistry.counter(HIT_COUNTER, "kind", "template").increment();
+                    return applyTemplate(decode(templateValue, TemplateEntry.class), template);
+                }
             }
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             log.error("Failed to deserialize cached result: {}", e.getMessage());
         }
         return null;
     }
 
     /**
-     * 缓存查询结果
+     * 计算文本模板；模板与原文缓存键相同（没有金额、日期和内部空白）时返回 null，不必再查一次
      */
-    public void cacheQueryResult(String query, String result) {
-        if (!isRedisAvailable()) {
-            return;
+    private LocalTextScanner.Template templateOf(String text) {
+        if (!templateEnabled) {
+            return null;
         }
-        String key = CACHE_PREFIX + "query:" + hashText(query);
-        redisTemplate.opsForValue().set(key, result, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+        LocalTextScanner.Template template = LocalTextScanner.template(text.trim(), LocalDateTime.now());
+        return template.key().equals(text.trim().toLowerCase()) ? null : template;
+    }
+
+    private String templateKey(LocalTextScanner.Template template) {
+        return key("tpl", hashText(template.key()));
     }
 
     /**
-     * 获取缓存的查询结果
+     * 只有解析出的金额等于本地提取的金额、日期等于本地提取的日期时，结果才能按模板复用
      */
-    public String getCachedQueryResult(String query) {
-        if (!isRedisAvailable()) {
+    private boolean isTemplateConsistent(AiParseResult result, LocalTextScanner.Result values) {
+        BigDecimal amount = result.getAmount();
+        if (amount == null ? values.amount() != null : values.amount() == null || amount.compareTo(values.amount()) != 0) {
+            return false;
+        }
+        if (result.getRecordTime() == null) {
+            return values.recordTime() == null;
+        }
+        try {
+            LocalDateTime expected = values.recordTime() != null ? values.recordTime() : LocalDateTime.now();
+            return LocalDateTime.parse(result.getRecordTime(), DATE_TIME_FORMATTER).toLocalDate()
+                .equals(expected.toLocalDate());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 把本次文本的金额和时间代入模板缓存的结果，摘要中的金额原文按顺序替换
+     */
+    private AiParseResult applyTemplate(TemplateEntry entry, LocalTextScanner.Template template) {
+        AiParseResult result = entry.result();
+        LocalTextScanner.Result values = template.values();
+        if (result.getAmount() != null) {
+            result.setAmount(values.amount());
+        }
+        if (result.getRecordTime() != null) {
+            LocalDateTime recordTime = values.recordTime() != null ? values.recordTime() : LocalDateTime.now();
+            result.setRecordTime(recordTime.format(DATE_TIME_FORMATTER));
+        }
+        String summary = result.getSummary();
+        List<String> oldSlots = entry.amountSlots();
+        List<String> newSlots = template.amountSlots();
+        if (summary != null && oldSlots != null && oldSlots.size() == newSlots.size()) {
+            for (int i = 0; i < oldSlots.size(); i++) {
+                summary = summary.replace(oldSlots.get(i).trim(), newSlots.get(i).trim());
+            }
+            result.setSummary(summary);
+        }
+        return result;
+    }
+
+    /**
+     * 按用户数据版本生成缓存键：用户数据变更后版本号递增，旧键不再命中。
+     * 需在读库之前调用，之后用同一个键写入，保证缓存内容不会比版本号更旧
+     */
+    public String userKey(String kind, Long userId, String discriminator) {
+        long version = dataVersionService.currentVersion(userId);
+        return key(kind, hashText(userId + ":" + version + ":" + discriminator));
+    }
+
+    /**
+     * 获取缓存的文本结果（查询回答、报告等）
+     */
+    public String getCachedText(String key) {
+        byte[] value = getValue(key);
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * 缓存文本结果；文本本身已是最终格式，直接存 UTF-8 字节
+     */
+    public void cacheText(String key, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        meterRegistry.summary(ENTRY_BYTES, "kind", "text").record(bytes.length);
+        putValue(key, bytes);
+    }
+
+    /**
+     * 获取缓存的记录列表
+     */
+    public List<LifeRecord> getCachedRecords(String key) {
+        byte[] value = getValue(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            List<LifeRecord> records = smileMapper.readValue(value, RECORD_LIST);
+            meterRegistry.timer(SERDE_TIMER, "op", "decode").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return records;
+        } catch (IOException e) {
+            log.error("Failed to deserialize cached records: {}", e.getMessage());
             return null;
         }
-        String key = CACHE_PREFIX + "query:" + hashText(query);
-        return redisTemplate.opsForValue().get(key);
     }
 
     /**
-     * 清除所有缓存
+     * 缓存记录列表
+     */
+    public void cacheRecords(String key, List<LifeRecord> records) {
+        try {
+            putValue(key, encode(records, "records"));
+        } catch (IOException e) {
+            log.error("Failed to cache records: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清除所有缓存：代数加一，所有节点随即改用新代的键，O(1) 且不阻塞 Redis
      */
     public void clearAllCache() {
+        l1.invalidateAll();
         if (!isRedisAvailable()) {
-            log.warn("Redis not available, cannot clear cache");
+            log.warn("Redis not available, cleared local cache only");
+            return;
+        }
+        try {
+            Long next = redisTemplate.opsForValue().increment(GENERATION_KEY);
+            if (next != null) {
+                updateGeneration(next);
+                publishInvalidation(INVALIDATE_ALL + next);
+                log.info("Cleared cache, generation is now {}", next);
+            }
+        } catch (Exception e) {
+            markRedisDown(e);
+        }
+    }
+
+    /**
+     * 后台增量 SCAN 删除旧代的键（它们也会随 TTL 过期，这里只是尽早释放内存）；
+     * 多节点时通过短期锁保证同一时间只有一个节点在清理
+     */
+    @Scheduled(initialDelayString = "${lifeos.cache.reaper-interval:PT10M}",
+               fixedDelayString = "${lifeos.cache.reaper-interval:PT10M}")
+    public void reapOldGenerations() {
+        long current = generation;
+        if (!isRedisAvailable() || current == 0) {
             return;
         }
-        var keys = redisTemplate.keys(CACHE_PREFIX + "*");
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-            log.info("Cleared {} cache entries", keys.size());
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(REAPER_LOCK_KEY, NODE_ID, Duration.ofMinutes(5)))) {
+                return;
+            }
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "g*").count(REAPER_BATCH).build();
+            List<String> batch = new ArrayList<>(REAPER_BATCH);
+            long removed = 0;
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    String key = cursor.next();
+                    if (generationOf(key) < current) {
+                        batch.add(key);
+                    }
+                    if (batch.size() >= REAPER_BATCH) {
+                        removed += unlink(batch);
+                    }
+                }
+            }
+            removed += unlink(batch);
+            if (removed > 0) {
+                log.info("Reaped {} cache entries from generations before {}", removed, current);
+            }
+        } catch (Exception e) {
+            log.warn("Cache reaper failed: {}", e.getMessage());
+        }
+    }
+
+    private long unlink(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long removed = redisTemplate.unlink(keys);
+        keys.clear();
+        return removed != null ? removed : 0;
+    }
+
+    /**
+     * 从 lifeos:v2:g<generation>:... 中取出代数，无法识别时返回 Long.MAX_VALUE（不删除）
+     */
+    private static long generationOf(String key) {
+        int start = KEY_PREFIX.length() + 1;
+        int end = key.indexOf(':', start);
+        try {
+            return end > start ? Long.parseLong(key.substring(start, end)) : Long.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
         }
     }
 
     /**
-     * 生成文本的简单哈希
+     * 归一化文本的 128 位哈希（22 个字符）
      */
-    private String hashText(String text) {
-        return String.valueOf(text.trim().toLowerCase().hashCode());
+    String hashText(String text) {
+        return Murmur3.hash128(text.trim().toLowerCase());
     }
 }
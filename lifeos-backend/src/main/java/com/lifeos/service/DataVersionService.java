@@ -0,0 +1,149 @@
+package com.lifeos.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个用户的数据版本号：用户的记录有任何增删改（提交后）都递增一次。
+ * 记录列表、报告、查询结果的缓存键都带上版本号，数据一变旧缓存自然不再命中，不依赖 TTL。
+ * 版本号以 Redis INCR 为准，本地缓存一份并通过 Redis 频道同步；Redis 不可用时先在本地递增并记下次数，
+ * 恢复后按次数 INCRBY 补发，保证 Redis 中的版本号不小于本地已经用过的版本号
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DataVersionService implements MessageListener {
+
+    private static final String KEY_PREFIX = "lifeos:data-version:";
+    private static final String CHANNEL = "lifeos:data-version:changed";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    // CacheService 依赖本服务，延迟获取以避免循环依赖
+    private final ObjectProvider<CacheService> cacheService;
+
+    // 本地副本的有效期，兜底错过的变更通知
+    @Value("${lifeos.data-version.local-ttl:1m}")
+    private Duration localTtl;
+
+    @Value("${lifeos.data-version.local-max-size:100000}")
+    private long localMaxSize;
+
+    private Cache<Long, Long> versions;
+
+    // Redis 不可用期间本地递增过、尚未写回 Redis 的用户及递增次数
+    private final Map<Long, Long> pendingBumps = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        versions = Caffeine.newBuilder()
+            .maximumSize(localMaxSize)
+            .expireAfterWrite(localTtl)
+            .build();
+        try {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        } catch (Exception e) {
+            log.warn("Failed to subscribe to data version changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用户当前的数据版本号；应在读取数据之前取得，保证缓存的数据不会比版本号更旧
+     */
+    public long currentVersion(Long userId) {
+        return versions.get(userId, this::loadVersion);
+    }
+
+    /**
+     * 用户数据已变更（事务提交后调用）
+     */
+    public void bump(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        // 已有待补发的递增时 Redis 中的版本号落后于本地，继续在本地累加，由 flushPendingBumps 一并补发
+        if (cacheService.getObject().isRedisAvailable() && !pendingBumps.containsKey(userId)) {
+            try {
+                Long next = redisTemplate.opsForValue().increment(KEY_PREFIX + userId);
+                if (next != null) {
+                    publish(userId, next);
+                    return;
+                }
+            } catch (Exception e) {
+                log.debug("Redis not available, bumping data version of user {} locally: {}", userId, e.getMessage());
+            }
+        }
+        versions.asMap().merge(userId, currentVersion(userId) + 1, Math::max);
+        pendingBumps.merge(userId, 1L, Long::sum);
+    }
+
+    /**
+     * 把 Redis 不可用期间的本地递增按次数写回 Redis
+     */
+    @Scheduled(fixedDelayString = "${lifeos.cache.health-interval:PT5S}")
+    public void flushPendingBumps() {
+        if (pendingBumps.isEmpty() || !cacheService.getObject().isRedisAvailable()) {
+            return;
+        }
+        for (Long userId : pendingBumps.keySet()) {
+            Long delta = pendingBumps.remove(userId);
+            if (delta == null) {
+                continue;
+            }
+            try {
+                Long next = redisTemplate.opsForValue().increment(KEY_PREFIX + userId, delta);
+                if (next != null) {
+                    publish(userId, next);
+                }
+            } catch (Exception e) {
+                // 写回失败，次数放回，等下一轮
+                pendingBumps.merge(userId, delta, Long::sum);
+                return;
+            }
+        }
+    }
+
+    private void publish(Long userId, long version) {
+        versions.asMap().merge(userId, version, Math::max);
+        redisTemplate.convertAndSend(CHANNEL, userId + ":" + version);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        try {
+            Long userId = Long.parseLong(body.substring(0, separator));
+            long version = Long.parseLong(body.substring(separator + 1));
+            versions.asMap().merge(userId, version, Math::max);
+        } catch (RuntimeException e) {
+            log.debug("Ignoring malformed data version message: {}", body);
+        }
+    }
+
+    private long loadVersion(Long userId) {
+        try {
+            String value = redisTemplate.opsForValue().get(KEY_PREFIX + userId);
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -11,19 +13,37 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class DatabaseService {
 
+    private static final String LIFE_RECORDS = "life_records";
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private LlmConfigService llmConfigService;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private RecordStatsService recordStatsService;
+
+    @Autowired
+    private RecordTagService recordTagService;
+
     /**
      * 获取所有表信息
      */
@@ -200,8 +220,12 @@ public class DatabaseService {
         StringBuilder values = new StringBuilder("VALUES (");
         List<Object> params = new ArrayList<>();
         
+        Set<String> generated = generatedColumns(tableName);
         boolean first = true;
         for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (generated.contains(entry.getKey().toLowerCase())) {
+                continue; // 生成列不能写入
+            }
             if (!first) {
                 sql.append(", ");
                 values.append(", ");
@@ -214,7 +238,9 @@ public class DatabaseService {
         
         sql.append(") ").append(values).append(")");
         
-        return jdbcTemplate.update(sql.toString(), params.toArray());
+        int rows = jdbcTemplate.update(sql.toString(), params.toArray());
+        afterTableChanged(tableName, ownerOf(data));
+        return rows;
     }
 
     /**
@@ -226,16 +252,27 @@ public class DatabaseService {
             throw new IllegalArgumentException("数据不能为空");
         }
         
+        // 更新前后的所属用户都需要刷新数据版本
+        List<Long> owners = findRecordOwners(tableName, id);
+        Long newOwner = ownerOf(data);
+        if (newOwner != null) {
+            owners.add(newOwner);
+        }
+
         StringBuilder sql = new StringBuilder("UPDATE ");
         sql.append(escapeIdentifier(tableName)).append(" SET ");
         
         List<Object> params = new ArrayList<>();
+        Set<String> generated = generatedColumns(tableName);
         boolean first = true;
         
         for (Map.Entry<String, Object> entry : data.entrySet()) {
             if ("id".equalsIgnoreCase(entry.getKey())) {
                 continue; // 跳过id字段
             }
+            if (generated.contains(entry.getKey().toLowerCase())) {
+                continue; // 生成列（如 life_records.record_date）不能写入
+            }
             if (!first) {
                 sql.append(", ");
             }
@@ -247,7 +284,13 @@ public class DatabaseService {
         sql.append(" WHERE id = ?");
         params.add(id);
         
-        return jdbcTemplate.update(sql.toString(), params.toArray());
+        int rows = jdbcTemplate.update(sql.toString(), params.toArray());
+        if (LIFE_RECORDS.equalsIgnoreCase(tableName)) {
+            // tags 列可能被修改，按新值重建标签关联；后台新增的记录由回填任务补齐
+            recordTagService.refresh(id);
+        }
+        afterTableChanged(tableName, owners.toArray(new Long[0]));
+        return rows;
     }
 
     /**
@@ -255,8 +298,78 @@ public class DatabaseService {
      */
     @Transactional
     public int deleteData(String tableName, Long id) {
+        List<Long> owners = findRecordOwners(tableName, id);
         String sql = "DELETE FROM " + escapeIdentifier(tableName) + " WHERE id = ?";
-        return jdbcTemplate.update(sql, id);
+        int rows = jdbcTemplate.update(sql, id);
+        afterTableChanged(tableName, owners.toArray(new Long[0]));
+        return rows;
+    }
+
+    /**
+     * 后台直接修改表数据后，在事务提交后刷新依赖该表的内存缓存；
+     * 修改 life_records 时在同一事务中重算所涉及用户的日统计（任意列都可能被改，无法按差值累加），
+     * 并在提交后递增其数据版本
+     */
+    private void afterTableChanged(String tableName, Long... recordOwners) {
+        if ("llm_config".equalsIgnoreCase(tableName)) {
+            runAfterCommit(llmConfigService::refresh);
+        }
+        if (LIFE_RECORDS.equalsIgnoreCase(tableName)) {
+            for (Long userId : new LinkedHashSet<>(Arrays.asList(recordOwners))) {
+                if (userId != null) {
+                    recordStatsService.rebuildUser(userId);
+                    runAfterCommit(() -> dataVersionService.bump(userId));
+                }
+            }
+        }
+    }
+
+    /**
+     * 表中的生成列（小写），后台编辑提交整行数据时需要跳过
+     */
+    private Set<String> generatedColumns(String tableName) {
+        String sql = "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND EXTRA LIKE '%GENERATED%'";
+        Set<String> columns = new HashSet<>();
+        for (String column : jdbcTemplate.queryForList(sql, String.class, tableName)) {
+            columns.add(column.toLowerCase());
+        }
+        return columns;
+    }
+
+    /**
+     * life_records 中某行所属的用户，其他表返回空列表
+     */
+    private List<Long> findRecordOwners(String tableName, Long id) {
+        if (!LIFE_RECORDS.equalsIgnoreCase(tableName)) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(jdbcTemplate.queryForList("SELECT user_id FROM life_records WHERE id = ?", Long.class, id));
+    }
+
+    private Long ownerOf(Map<String, Object> data) {
+        Object userId = data.get("user_id");
+        if (userId == null) {
+            return null;
+        }
+        try {
+            return userId instanceof Number number ? number.longValue() : Long.valueOf(userId.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     /**
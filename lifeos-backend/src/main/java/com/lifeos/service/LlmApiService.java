@@ -1,36 +1,51 @@
 package com.lifeos.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.lifeos.dto.AiParseResult;
+import com.lifeos.entity.LifeRecord;
 import com.lifeos.entity.LlmConfig;
-import com.lifeos.mapper.LlmConfigMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+@Slf4j
 @Service
 public class LlmApiService {
 
     @Autowired
-    private LlmConfigMapper llmConfigMapper;
+    private LlmConfigService llmConfigService;
+
+    @Autowired
+    private LlmHttpClient llmHttpClient;
+
+    @Autowired
+    private LlmCircuitBreaker llmCircuitBreaker;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final RestTemplate restTemplate = new RestTemplate();
+
+    // Claude 输出上限：单条解析 1024，批量时按条数放大但不超过模型上限
+    private static final int SINGLE_MAX_TOKENS = 1024;
+    private static final int BATCH_MAX_TOKENS = 4096;
+
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {};
 
     public AiParseResult parseWithLlm(String text) {
-        LlmConfig config = llmConfigMapper.findLatest();
+        LlmConfig config = llmConfigService.getActiveConfig();
         
         if (config == null || config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
             throw new RuntimeException("LLM not configured. Please configure in settings.");
@@ -45,13 +60,82 @@ public class LlmApiService {
                 case "gemini", "google" -> callGeminiApi(config, text);
                 default -> callOpenAiApi(config, text);
             };
+        } catch (LlmCircuitBreaker.CircuitOpenException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("LLM API call failed: " + e.getMessage());
+            log.warn("LLM API call failed: {}", e.getMessage());
             throw new RuntimeException("LLM API call failed: " + e.getMessage());
         }
     }
 
-    private AiParseResult callOpenAiApi(LlmConfig config, String text) {
+    /**
+     * 批量解析：一次 LLM 调用解析多条文本，结果与输入按下标一一对应，
+     * 模型漏掉的条目在对应位置返回 null，由调用方单独处理
+     */
+    public List<AiParseResult> parseBatchWithLlm(List<String> texts) {
+        LlmConfig config = llmConfigService.getActiveConfig();
+
+        if (config == null || config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+            throw new RuntimeException("LLM not configured. Please configure in settings.");
+        }
+
+        try {
+            ArrayNode items = objectMapper.createArrayNode();
+            for (int i = 0; i < texts.size(); i++) {
+                ObjectNode item = items.addObject();
+                item.put("index", i);
+                item.put("text", texts.get(i));
+            }
+            String content = chat(config, getSystemPrompt() + getBatchPromptSuffix(), items.toString(),
+                Math.min(SINGLE_MAX_TOKENS * texts.size(), BATCH_MAX_TOKENS));
+            return parseLlmBatchResponse(content, texts.size());
+        } catch (LlmCircuitBreaker.CircuitOpenException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("LLM batch API call failed: {}", e.getMessage());
+            throw new RuntimeException("LLM batch API call failed: " + e.getMessage());
+        }
+    }
+
+    private String chat(LlmConfig config, String systemPrompt, String userContent, int maxTokens) throws Exception {
+        String provider = config.getProvider() != null ? config.getProvider().toLowerCase() : "openai";
+
+        return switch (provider) {
+            case "openai", "azure" -> chatOpenAi(config, systemPrompt, userContent);
+            case "claude", "anthropic" -> chatClaude(config, systemPrompt, userContent, maxTokens);
+            case "gemini", "google" -> chatGemini(config, systemPrompt, userContent);
+            default -> chatOpenAi(config, systemPrompt, userContent);
+        };
+    }
+
+    private AiParseResult callOpenAiApi(LlmConfig config, String text) throws Exception {
+        String content = chatOpenAi(config, getSystemPrompt(), text);
+        try {
+            return parseLlmJsonResponse(content);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse OpenAI response: " + e.getMessage(), e);
+        }
+    }
+
+    private AiParseResult callClaudeApi(LlmConfig config, String text) throws Exception {
+        String content = chatClaude(config, getSystemPrompt(), text, SINGLE_MAX_TOKENS);
+        try {
+            return parseLlmJsonResponse(content);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Claude response: " + e.getMessage(), e);
+        }
+    }
+
+    private AiParseResult callGeminiApi(LlmConfig config, String text) throws Exception {
+        String content = chatGemini(config, getSystemPrompt(), text);
+        try {
+            return parseLlmJsonResponse(content);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Gemini response: " + e.getMessage(), e);
+        }
+    }
+
+    private String chatOpenAi(LlmConfig config, String systemPrompt, String userContent) throws Exception {
         String apiUrl = config.getApiUrl() != null && !config.getApiUrl().isEmpty() 
             ? config.getApiUrl() 
             : "https://api.openai.com/v1/chat/completions";
@@ -89,29 +173,20 @@ public class LlmApiService {
         ArrayNode messages = requestBody.putArray("messages");
         ObjectNode systemMessage = messages.addObject();
         systemMessage.put("role", "system");
-        systemMessage.put("content", getSystemPrompt());
+        systemMessage.put("content", systemPrompt);
         
         ObjectNode userMessage = messages.addObject();
         userMessage.put("role", "user");
-        userMessage.put("content", text);
+        userMessage.put("content", userContent);
 
         HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
         
-        ResponseEntity<String> response = restTemplate.exchange(
-            apiUrl, 
-            HttpMethod.POST, 
-            entity, 
-            String.class
-        );
+        ResponseEntity<String> response = exchange(config, apiUrl, entity);
 
-        try {
-            return parseOpenAiResponse(response.getBody());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse OpenAI response: " + e.getMessage(), e);
-        }
+        return extractOpenAiContent(response.getBody());
     }
 
-    private AiParseResult callClaudeApi(LlmConfig config, String text) {
+    private String chatClaude(LlmConfig config, String systemPrompt, String userContent, int maxTokens) throws Exception {
         String apiUrl = config.getApiUrl() != null && !config.getApiUrl().isEmpty()
             ? config.getApiUrl()
             : "https://api.anthropic.com/v1/messages";
@@ -125,30 +200,21 @@ public class LlmApiService {
 
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("model", model);
-        requestBody.put("max_tokens", 1024);
+        requestBody.put("max_tokens", maxTokens);
         
         ArrayNode messages = requestBody.putArray("messages");
         ObjectNode message = messages.addObject();
         message.put("role", "user");
-        message.put("content", getSystemPrompt() + "\n\nUser input: " + text);
+        message.put("content", systemPrompt + "\n\nUser input: " + userContent);
 
         HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
         
-        ResponseEntity<String> response = restTemplate.exchange(
-            apiUrl,
-            HttpMethod.POST,
-            entity,
-            String.class
-        );
+        ResponseEntity<String> response = exchange(config, apiUrl, entity);
 
-        try {
-            return parseClaudeResponse(response.getBody());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse Claude response: " + e.getMessage(), e);
-        }
+        return extractClaudeContent(response.getBody());
     }
 
-    private AiParseResult callGeminiApi(LlmConfig config, String text) {
+    private String chatGemini(LlmConfig config, String systemPrompt, String userContent) throws Exception {
         String model = config.getModel() != null ? config.getModel() : "gemini-pro";
         String apiUrl = config.getApiUrl() != null && !config.getApiUrl().isEmpty()
             ? config.getApiUrl()
@@ -162,22 +228,21 @@ public class LlmApiService {
         ArrayNode contents = requestBody.putArray("contents");
         ObjectNode content = contents.addObject();
         ObjectNode parts = content.putObject("parts");
-        parts.put("text", getSystemPrompt() + "\n\nUser input: " + text);
+        parts.put("text", systemPrompt + "\n\nUser input: " + userContent);
 
         HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
         
-        ResponseEntity<String> response = restTemplate.exchange(
-            apiUrl,
-            HttpMethod.POST,
-            entity,
-            String.class
-        );
+        ResponseEntity<String> response = exchange(config, apiUrl, entity);
 
-        try {
-            return parseGeminiResponse(response.getBody());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse Gemini response: " + e.getMessage(), e);
-        }
+        return extractGeminiContent(response.getBody());
+    }
+
+    /**
+     * 经熔断器发出请求：提供商熔断期间立即抛出 CircuitOpenException，不再等待远端超时
+     */
+    private ResponseEntity<String> exchange(LlmConfig config, String apiUrl, HttpEntity<String> entity) {
+        return llmCircuitBreaker.execute(config.getProvider(), () ->
+            llmHttpClient.restTemplate(config.getProvider()).exchange(apiUrl, HttpMethod.POST, entity, String.class));
     }
 
     private String getSystemPrompt() {
@@ -223,22 +288,28 @@ public class LlmApiService {
             """;
     }
 
-    private AiParseResult parseOpenAiResponse(String responseBody) throws Exception {
+    private String getBatchPromptSuffix() {
+        return """
+            
+            批量模式：用户输入是一个JSON数组，每个元素包含 index 和 text 字段，代表一条独立的记录。
+            请对每一条分别按上述规则解析，返回一个JSON数组，数组中每个元素是上述JSON对象，并额外包含对应的 index 字段。
+            请只返回JSON数组，不要有其他文字。
+            """;
+    }
+
+    private String extractOpenAiContent(String responseBody) throws Exception {
         JsonNode root = objectMapper.readTree(responseBody);
-        String content = root.path("choices").get(0).path("message").path("content").asText();
-        return parseLlmJsonResponse(content);
+        return root.path("choices").get(0).path("message").path("content").asText();
     }
 
-    private AiParseResult parseClaudeResponse(String responseBody) throws Exception {
+    private String extractClaudeContent(String responseBody) throws Exception {
         JsonNode root = objectMapper.readTree(responseBody);
-        String content = root.path("content").get(0).path("text").asText();
-        return parseLlmJsonResponse(content);
+        return root.path("content").get(0).path("text").asText();
     }
 
-    private AiParseResult parseGeminiResponse(String responseBody) throws Exception {
+    private String extractGeminiContent(String responseBody) throws Exception {
         JsonNode root = objectMapper.readTree(responseBody);
-        String content = root.path("candidates").get(0).path("content").path("parts").get(0).path("text").asText();
-        return parseLlmJsonResponse(content);
+        return root.path("candidates").get(0).path("content").path("parts").get(0).path("text").asText();
     }
 
     private AiParseResult parseLlmJsonResponse(String content) throws Exception {
@@ -249,13 +320,39 @@ public class LlmApiService {
             content = matcher.group(1);
         }
 
-        JsonNode json = objectMapper.readTree(content);
-        
+        return toParseResult(objectMapper.readTree(content));
+    }
+
+    private List<AiParseResult> parseLlmBatchResponse(String content, int size) throws Exception {
+        // Extract JSON array from markdown code blocks if present
+        Pattern jsonPattern = Pattern.compile("```(?:json)?\\s*(\\[.*?\\])\\s*```", Pattern.DOTALL);
+        Matcher matcher = jsonPattern.matcher(content);
+        if (matcher.find()) {
+            content = matcher.group(1);
+        }
+
+        JsonNode array = objectMapper.readTree(content);
+        if (!array.isArray()) {
+            throw new RuntimeException("Batch response is not a JSON array");
+        }
+
+        List<AiParseResult> results = new ArrayList<>(Collections.nCopies(size, null));
+        for (int i = 0; i < array.size(); i++) {
+            JsonNode item = array.get(i);
+            int index = item.path("index").asInt(i);
+            if (index >= 0 && index < size && results.get(index) == null) {
+                results.set(index, toParseResult(item));
+            }
+        }
+        return results;
+    }
+
+    private AiParseResult toParseResult(JsonNode json) {
         AiParseResult result = new AiParseResult();
         
         // Handle recordTypes array or single recordType
         if (json.has("recordTypes") && json.path("recordTypes").isArray()) {
-            List<String> recordTypes = objectMapper.convertValue(json.path("recordTypes"), List.class);
+            List<String> recordTypes = objectMapper.convertValue(json.path("recordTypes"), STRING_LIST);
             result.setRecordTypes(recordTypes);
         } else if (json.has("recordType")) {
             String recordType = json.path("recordType").asText("diary");
@@ -277,7 +374,7 @@ public class LlmApiService {
         }
         
         if (json.has("tags") && json.path("tags").isArray()) {
-            List<String> tags = objectMapper.convertValue(json.path("tags"), List.class);
+            List<String> tags = objectMapper.convertValue(json.path("tags"), STRING_LIST);
             result.setTags(tags);
         } else {
             result.setTags(Arrays.asList("未分类"));
@@ -294,6 +391,7 @@ public class LlmApiService {
         result.setRecordTime(recordTime);
         
         result.setSummary(json.path("summary").asText(""));
+        result.setSource(LifeRecord.PARSE_SOURCE_LLM);
         
         return result;
     }
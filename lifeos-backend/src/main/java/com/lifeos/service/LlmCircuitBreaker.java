@@ -0,0 +1,189 @@
+package com.lifeos.service;
+
+import com.lifeos.config.LlmCircuitBreakerProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 按提供商熔断 LLM 调用：最近 N 次调用的失败率或慢调用率超过阈值时熔断，
+ * 熔断期间直接抛出 CircuitOpenException，由调用方立即走本地规则；
+ * 熔断时间过后进入半开状态，放行少量探测请求决定恢复或继续熔断
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LlmCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final LlmCircuitBreakerProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 在熔断器保护下执行一次调用，抛出的异常计为失败，超过慢调用阈值计为慢调用
+     */
+    public <T> T execute(String provider, Supplier<T> call) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+
+        Breaker breaker = breaker(provider);
+        if (!breaker.tryAcquire()) {
+            meterRegistry.counter("lifeos.llm.circuit.rejected", "provider", breaker.name).increment();
+            throw new CircuitOpenException(breaker.name);
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            breaker.onResult(false, System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onResult(true, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * 当前是否会放行该提供商的调用（不占用半开探测名额）
+     */
+    public boolean isCallPermitted(String provider) {
+        return !properties.isEnabled() || breaker(provider).state() != State.OPEN;
+    }
+
+    public State getState(String provider) {
+        return breaker(provider).state();
+    }
+
+    private Breaker breaker(String provider) {
+        return breakers.computeIfAbsent(LlmHttpClient.providerKey(provider), name -> {
+            Breaker breaker = new Breaker(name);
+            meterRegistry.gauge("lifeos.llm.circuit.state", Tags.of("provider", name),
+                breaker, b -> b.state().ordinal());
+            return breaker;
+        });
+    }
+
+    /**
+     * 单个提供商的熔断状态，窗口为固定长度的环形数组
+     */
+    private final class Breaker {
+
+        private final String name;
+        private final boolean[] failures = new boolean[properties.getWindowSize()];
+        private final boolean[] slowCalls = new boolean[properties.getWindowSize()];
+        private int position;
+        private int recorded;
+        private int failureCount;
+        private int slowCount;
+
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int halfOpenPermits;
+        private int halfOpenSuccesses;
+
+        private Breaker(String name) {
+            this.name = name;
+        }
+
+        synchronized State state() {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= properties.getOpenDuration().toNanos()) {
+                transition(State.HALF_OPEN);
+            }
+            return state;
+        }
+
+        synchronized boolean tryAcquire() {
+            return switch (state()) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> {
+                    if (halfOpenPermits > 0) {
+                        halfOpenPermits--;
+                        yield true;
+                    }
+                    yield false;
+                }
+            };
+        }
+
+        synchronized void onResult(boolean failed, long durationNanos) {
+            boolean slow = durationNanos >= properties.getSlowCallDuration().toNanos();
+
+            if (state == State.HALF_OPEN) {
+                if (failed || slow) {
+                    transition(State.OPEN);
+                } else if (++halfOpenSuccesses >= properties.getHalfOpenCalls()) {
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                // 熔断前已放行的请求，结果不再计入窗口
+                return;
+            }
+
+            record(failed, slow);
+            if (recorded >= properties.getMinimumCalls()
+                    && (failureCount * 100 >= properties.getFailureRateThreshold() * recorded
+                        || slowCount * 100 >= properties.getSlowCallRateThreshold() * recorded)) {
+                log.warn("LLM provider {} circuit opened: {} failures, {} slow calls in last {} calls",
+                    name, failureCount, slowCount, recorded);
+                transition(State.OPEN);
+            }
+        }
+
+        private void record(boolean failed, boolean slow) {
+            if (recorded == failures.length) {
+                failureCount -= failures[position] ? 1 : 0;
+                slowCount -= slowCalls[position] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            failures[position] = failed;
+            slowCalls[position] = slow;
+            failureCount += failed ? 1 : 0;
+            slowCount += slow ? 1 : 0;
+            position = (position + 1) % failures.length;
+        }
+
+        private void transition(State target) {
+            State from = state;
+            state = target;
+            switch (target) {
+                case OPEN -> openedAt = System.nanoTime();
+                case HALF_OPEN -> {
+                    halfOpenPermits = properties.getHalfOpenCalls();
+                    halfOpenSuccesses = 0;
+                }
+                case CLOSED -> {
+                    position = 0;
+                    recorded = 0;
+                    failureCount = 0;
+                    slowCount = 0;
+                }
+            }
+            log.info("LLM provider {} circuit {} -> {}", name, from, target);
+            meterRegistry.counter("lifeos.llm.circuit.transitions",
+                "provider", name, "from", from.name(), "to", target.name()).increment();
+        }
+    }
+
+    /**
+     * 熔断期间拒绝调用
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException(String provider) {
+            super("LLM provider " + provider + " circuit is open");
+        }
+    }
+}
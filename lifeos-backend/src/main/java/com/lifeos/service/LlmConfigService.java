@@ -0,0 +1,117 @@
+package com.lifeos.service;
+
+import com.lifeos.entity.LlmConfig;
+import com.lifeos.mapper.LlmConfigMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 当前生效的 LLM 配置：内存中保存一份只读快照，读取无锁、不查库；
+ * 通过本服务保存或删除配置时刷新快照，并经 Redis 频道通知其他节点重新加载
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LlmConfigService implements MessageListener {
+
+    private static final String CHANNEL = "lifeos:llm-config:changed";
+
+    // 本节点标识，用于忽略自己发出的变更通知
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    private final LlmConfigMapper llmConfigMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 快照为 null 表示尚未加载；Snapshot.config 为 null 表示数据库中没有配置
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    private record Snapshot(LlmConfig config) {}
+
+    @PostConstruct
+    public void subscribe() {
+        try {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        } catch (Exception e) {
+            log.warn("Failed to subscribe to LLM config changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取当前配置，可能为 null
+     */
+    public LlmConfig getActiveConfig() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            current = reload();
+        }
+        return current.config();
+    }
+
+    /**
+     * 保存配置（已存在则更新）并通知所有节点
+     */
+    public LlmConfig save(LlmConfig config) {
+        LlmConfig existing = llmConfigMapper.findLatest();
+        if (existing != null) {
+            config.setId(existing.getId());
+            llmConfigMapper.update(config);
+        } else {
+            llmConfigMapper.insert(config);
+        }
+        refresh();
+        return config;
+    }
+
+    /**
+     * 删除全部配置并通知所有节点
+     */
+    public void delete() {
+        llmConfigMapper.deleteAll();
+        refresh();
+    }
+
+    /**
+     * 重新加载本节点快照并广播变更；配置表被其他途径修改后也应调用
+     */
+    public void refresh() {
+        reload();
+        publish();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String sender = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!NODE_ID.equals(sender)) {
+            log.info("LLM config changed on another node, reloading");
+            reload();
+        }
+    }
+
+    private Snapshot reload() {
+        Snapshot loaded = new Snapshot(llmConfigMapper.findLatest());
+        snapshot.set(loaded);
+        return loaded;
+    }
+
+    private void publish() {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, NODE_ID);
+        } catch (Exception e) {
+            log.debug("Redis not available, LLM config change not broadcast: {}", e.getMessage());
+        }
+    }
+}
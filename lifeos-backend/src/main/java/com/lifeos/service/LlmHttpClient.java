@@ -0,0 +1,254 @@
+package com.lifeos.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.lifeos.config.LlmHttpProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 共享的 LLM 出站客户端：每个提供商一个基于 JDK HttpClient 的 RestTemplate，
+ * 复用连接池和 TLS 会话，支持 HTTP/2，并带有按提供商配置的连接/请求超时。
+ * JDK 客户端的读超时只覆盖等待响应头，响应体和 SSE 流由 deadline 计时器兜底：到期后关闭响应流，
+ * 阻塞中的读取随之返回并抛出 SocketTimeoutException
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LlmHttpClient {
+
+    private final LlmHttpProperties properties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, RestTemplate> templates = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "llm-http-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 获取指定提供商的 RestTemplate（线程安全，可长期复用）
+     */
+    public RestTemplate restTemplate(String provider) {
+        return templates.computeIfAbsent(providerKey(provider), this::createRestTemplate);
+    }
+
+    /**
+     * 以流式模式调用 OpenAI 兼容的 chat/completions 接口，每收到一段增量内容回调一次 onDelta，
+     * 返回完整内容。请求体会自动加上 "stream": true
+     */
+    public String streamOpenAiChat(String provider, String apiUrl, String apiKey, ObjectNode requestBody,
+                                   Consumer<String> onDelta) {
+        requestBody.put("stream", true);
+        StringBuilder full = new StringBuilder();
+
+        restTemplate(provider).execute(apiUrl, HttpMethod.POST, request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+            request.getHeaders().setBearerAuth(apiKey);
+            request.getBody().write(requestBody.toString().getBytes(StandardCharsets.UTF_8));
+        }, response -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        break;
+                    }
+                    JsonNode delta = objectMapper.readTree(data).path("choices").path(0).path("delta").path("content");
+                    if (delta.isTextual() && !delta.asText().isEmpty()) {
+                        full.append(delta.asText());
+                        onDelta.accept(delta.asText());
+                    }
+                }
+            }
+            return null;
+        });
+
+        return full.toString();
+    }
+
+    /**
+     * 将提供商别名归一，与 LlmApiService 的路由规则一致
+     */
+    public static String providerKey(String provider) {
+        String name = provider != null ? provider.toLowerCase() : "openai";
+        return switch (name) {
+            case "openai", "azure" -> "openai";
+            case "claude", "anthropic" -> "claude";
+            case "gemini", "google" -> "gemini";
+            default -> name;
+        };
+    }
+
+    private RestTemplate createRestTemplate(String providerKey) {
+        LlmHttpProperties.Timeouts overrides = properties.getProviders().get(providerKey);
+        Duration connectTimeout = overrides != null && overrides.getConnectTimeout() != null
+                ? overrides.getConnectTimeout() : properties.getConnectTimeout();
+        Duration requestTimeout = overrides != null && overrides.getRequestTimeout() != null
+                ? overrides.getRequestTimeout() : properties.getRequestTimeout();
+        Duration deadline = overrides != null && overrides.getDeadline() != null
+                ? overrides.getDeadline() : properties.getDeadline();
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(requestTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(deadlineInterceptor(deadline));
+
+        log.info("Created LLM HTTP client for provider {} (connect {}, request {}, deadline {})",
+                providerKey, connectTimeout, requestTimeout, deadline);
+        return restTemplate;
+    }
+
+    /**
+     * 请求发出时开始计时，响应体的读取也计入同一个 deadline
+     */
+    private ClientHttpRequestInterceptor deadlineInterceptor(Duration deadline) {
+        return (request, body, execution) -> {
+            long deadlineNanos = System.nanoTime() + deadline.toNanos();
+            ClientHttpResponse response = execution.execute(request, body);
+            return new DeadlineResponse(response, deadlineNanos, deadline);
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineTimer.shutdownNow();
+    }
+
+    /**
+     * 到期时直接关闭底层响应流（不 drain），之后的读取一律抛出超时异常，
+     * 避免流被关闭后 readLine 返回 null 被当成正常结束
+     */
+    private final class DeadlineResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Duration deadline;
+        private final ScheduledFuture<?> timer;
+        private volatile boolean expired;
+        private InputStream body;
+
+        DeadlineResponse(ClientHttpResponse delegate, long deadlineNanos, Duration deadline) {
+            this.delegate = delegate;
+            this.deadline = deadline;
+            this.timer = deadlineTimer.schedule(this::expire,
+                    Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                delegate.getBody().close();
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to close LLM response after deadline: {}", e.getMessage());
+            }
+        }
+
+        private void checkDeadline() throws SocketTimeoutException {
+            if (expired) {
+                throw new SocketTimeoutException("LLM response exceeded deadline of " + deadline);
+            }
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public synchronized InputStream getBody() throws IOException {
+            checkDeadline();
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        checkDeadline();
+                        try {
+                            int value = super.read();
+                            checkDeadline();
+                            return value;
+                        } catch (IOException e) {
+                            checkDeadline();
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        checkDeadline();
+                        try {
+                            int count = super.read(buffer, offset, length);
+                            checkDeadline();
+                            return count;
+                        } catch (IOException e) {
+                            checkDeadline();
+                            throw e;
+                        }
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            timer.cancel(false);
+            if (expired) {
+                // 流已被计时器关闭，不再走 delegate.close() 的 drain
+                return;
+            }
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.lifeos.service;
+
+import com.lifeos.dto.AiParseResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LLM 解析微批：短时间窗口内到达的单条解析请求合并为一次批量调用（系统提示词只发送一次），
+ * 结果按下标分发回等待的调用方。窗口到期（lifeos.llm.batch.window）或攒满 max-items 条时发送
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LlmParseBatcher {
+
+    private static final String BATCH_SIZE_SUMMARY = "lifeos.llm.batch.size";
+
+    private final LlmApiService llmApiService;
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("llmBatchExecutor")
+    private final ThreadPoolTaskExecutor llmBatchExecutor;
+
+    @Value("${lifeos.llm.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lifeos.llm.batch.window:50ms}")
+    private Duration window;
+
+    @Value("${lifeos.llm.batch.max-items:16}")
+    private int maxItems;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+    private ScheduledExecutorService timer;
+
+    private record Pending(String text, CompletableFuture<AiParseResult> future) {}
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lifeos-llm-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+        // 窗口内尚未发送的请求立即发送，llmBatchExecutor 关闭时会等待其完成
+        flush();
+    }
+
+    /**
+     * 解析一条文本，阻塞直到所在批次返回；批量结果中漏掉的条目单独调用一次 LLM
+     */
+    public AiParseResult parse(String text) {
+        if (!enabled || maxItems <= 1) {
+            return llmApiService.parseWithLlm(text);
+        }
+
+        CompletableFuture<AiParseResult> future = new CompletableFuture<>();
+        List<Pending> full = null;
+        synchronized (lock) {
+            pending.add(new Pending(text, future));
+            if (pending.size() >= maxItems) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                flushTask = timer.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+
+        AiParseResult result;
+        try {
+            result = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return result != null ? result : llmApiService.parseWithLlm(text);
+    }
+
+    private void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * 取出当前批次并取消其定时发送，调用方需持有 lock
+     */
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        try {
+            llmBatchExecutor.execute(() -> send(batch));
+        } catch (TaskRejectedException e) {
+            // 发送线程池满载，调用方按 LLM 失败处理（回退本地规则）
+            log.warn("LLM batch executor saturated, rejecting {} parse requests", batch.size());
+            batch.forEach(p -> p.future().completeExceptionally(e));
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        meterRegistry.summary(BATCH_SIZE_SUMMARY).record(batch.size());
+        try {
+            if (batch.size() == 1) {
+                batch.get(0).future().complete(llmApiService.parseWithLlm(batch.get(0).text()));
+                return;
+            }
+            List<String> texts = batch.stream().map(Pending::text).toList();
+            log.debug("Sending micro-batch of {} parse requests", texts.size());
+            List<AiParseResult> results = llmApiService.parseBatchWithLlm(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(i < results.size() ? results.get(i) : null);
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(p -> p.future().completeExceptionally(e));
+        }
+    }
+}
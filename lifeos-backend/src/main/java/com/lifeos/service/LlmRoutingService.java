@@ -1,6 +1,8 @@
 package com.lifeos.service;
 
 import com.lifeos.dto.AiParseResult;
+import com.lifeos.entity.LifeRecord;
+import com.lifeos.util.LocalTextScanner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -10,8 +12,6 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class LlmRoutingService {
@@ -22,6 +22,9 @@ public class LlmRoutingService {
     @Autowired
     private LlmApiService llmApiService;
 
+    @Autowired
+    private LocalKeywordEngine localKeywordEngine;
+
     public AiParseResult parseText(String text) {
         if (text == null || text.trim().isEmpty()) {
             return createDefaultResult("Empty input");
@@ -37,59 +40,90 @@ public class LlmRoutingService {
         }
     }
 
-    private AiParseResult parseWithLocalRules(String text) {
+    public AiParseResult parseWithLocalRules(String text) {
         try {
-            List<String> recordTypes = detectRecordTypes(text);
-            BigDecimal amount = extractAmount(text);
-            List<String> tags = extractTags(text, recordTypes);
-            Integer emotionScore = analyzeEmotion(text);
-            String recordTime = LocalDateTime.now().format(DATE_TIME_FORMATTER);
+            // 关键词一次扫描得到类型、标签和情绪，金额和时间由 LocalTextScanner 一次扫描得到
+            LocalKeywordEngine.Match match = localKeywordEngine.match(text);
+            LocalDateTime now = LocalDateTime.now();
+            LocalTextScanner.Result scanned = LocalTextScanner.scan(text, now);
+            BigDecimal amount = scanned.amount();
+            List<String> recordTypes = detectRecordTypes(match, amount);
+            List<String> tags = extractTags(match);
+            Integer emotionScore = match.emotionScore();
+            String recordTime = (scanned.recordTime() != null ? scanned.recordTime() : now).format(DATE_TIME_FORMATTER);
             String summary = generateSummary(text, recordTypes, amount);
             
-            return AiParseResult.of(recordTypes, amount, tags, emotionScore, recordTime, summary);
+            AiParseResult result = AiParseResult.of(recordTypes, amount, tags, emotionScore, recordTime, summary);
+            result.setConfidence(scoreConfidence(text, match, amount, recordTypes, emotionScore));
+            result.setSource(LifeRecord.PARSE_SOURCE_LOCAL);
+            return result;
         } catch (Exception e) {
             System.err.println("Error parsing text: " + e.getMessage());
-            return createDefaultResult(text);
+            AiParseResult result = createDefaultResult(text);
+            result.setConfidence(0.0);
+            result.setSource(LifeRecord.PARSE_SOURCE_LOCAL);
+            return result;
         }
     }
 
+    /**
+     * 本地规则结果的置信度（0-1）：从 1 开始，按缺失或矛盾的信号逐项打折。
+     * 带金额和消费关键词的短消费记录接近 1，没有命中任何关键词或较长的叙述性文本明显偏低
+     */
+    private double scoreConfidence(String text, LocalKeywordEngine.Match match, BigDecimal amount,
+                                   List<String> recordTypes, int emotionScore) {
+        List<String> keywordTypes = match.recordTypes();
+        boolean expense = recordTypes.contains("expense");
+        double confidence = 1.0;
+        
+        if (keywordTypes.isEmpty() && amount == null) {
+            // 没有命中任何类型关键词，只能默认为日记
+            confidence *= 0.3;
+        }
+        if (expense && amount == null) {
+            confidence *= 0.5;
+        } else if (expense && !keywordTypes.contains("expense")) {
+            // 只有金额没有消费关键词
+            confidence *= 0.9;
+        }
+        if (expense && match.tags().isEmpty()) {
+            // 消费没有命中任何标签，只能标为未分类，交给下一级解析
+            confidence *= 0.7;
+        }
+        if (recordTypes.contains("mood") && emotionScore == 0) {
+            // 识别为情绪记录但无法判断正负
+            confidence *= 0.5;
+        }
+        if (recordTypes.size() >= 3) {
+            confidence *= 0.8;
+        }
+        
+        int length = text.trim().length();
+        if (length > 60) {
+            confidence *= 0.5;
+        } else if (length > 30) {
+            confidence *= 0.7;
+        }
+        
+        return confidence;
+    }
+
     private AiParseResult createDefaultResult(String text) {
         return AiParseResult.of(
             Arrays.asList("diary"),
             null,
-            Arrays.asList("Uncategorized"),
+            Arrays.asList("未分类"),
             0,
             LocalDateTime.now().format(DATE_TIME_FORMATTER),
             text.length() > 50 ? text.substring(0, 50) + "..." : text
         );
     }
 
-    private List<String> detectRecordTypes(String text) {
-        String lowerText = text.toLowerCase();
-        List<String> types = new ArrayList<>();
-        
-        String[] expenseKeywords = {"spend", "buy", "cost", "pay", "yuan", "rmb", "dollar", "price", "fee", 
-            "shopping", "eat", "taxi", "subway", "bus", "coffee", "milk tea", "delivery", "supermarket", "mall", "taobao", "jd", "花了", "消费", "买", "付款", "价格", "吃饭", "打车", "公交", "地铁"};
-        
-        String[] moodKeywords = {"happy", "sad", "upset", "excited", "depressed", "disappointed", "anxious", 
-            "nervous", "relaxed", "comfortable", "uncomfortable", "angry", "satisfied", "disappointed", "happy", "joyful", "painful",
-            "开心", "难过", "伤心", "高兴", "沮丧", "失望", "焦虑", "紧张", "放松", "舒服", "生气", "满意", "郁闷", "郁闷"};
-        
-        String[] eventKeywords = {"meeting", "date", "party", "activity", "exam", "interview", "travel", "business trip", 
-            "move", "renovation", "wedding", "birthday", "holiday", "anniversary", "competition", "performance", "movie", "exhibition",
-            "会议", "约会", "聚会", "活动", "考试", "面试", "旅行", "出差", "搬家", "装修", "婚礼", "生日", "节假日", "周年", "比赛"};
-        
-        if (countKeywords(lowerText, expenseKeywords) > 0 || 
-            (extractAmount(text) != null && extractAmount(text).compareTo(BigDecimal.ZERO) > 0)) {
-            types.add("expense");
-        }
-        
-        if (countKeywords(lowerText, moodKeywords) > 0) {
-            types.add("mood");
-        }
+    private List<String> detectRecordTypes(LocalKeywordEngine.Match match, BigDecimal amount) {
+        List<String> types = match.recordTypes();
         
-        if (countKeywords(lowerText, eventKeywords) > 0) {
-            types.add("event");
+        if (amount != null && amount.compareTo(BigDecimal.ZERO) > 0 && !types.contains("expense")) {
+            types.add(0, "expense");
         }
         
         if (types.isEmpty()) {
@@ -99,123 +133,28 @@ public class LlmRoutingService {
         return types;
     }
 
-    private int countKeywords(String text, String[] keywords) {
-        int count = 0;
-        for (String keyword : keywords) {
-            if (text.contains(keyword)) {
-                count++;
-            }
-        }
-        return count;
-    }
-
-    private BigDecimal extractAmount(String text) {
-        try {
-            // Match amount patterns: number + yuan/block/dollar
-            Pattern pattern = Pattern.compile("(\\d+(?:\\.\\d{1,2})?)\\s*[yuan|rmb|dollar|block|$]");
-            Matcher matcher = pattern.matcher(text);
-            
-            BigDecimal total = BigDecimal.ZERO;
-            boolean found = false;
-            
-            while (matcher.find()) {
-                try {
-                    BigDecimal amount = new BigDecimal(matcher.group(1));
-                    total = total.add(amount);
-                    found = true;
-                } catch (NumberFormatException e) {
-                    // Ignore unparseable amounts
-                }
-            }
-            
-            return found ? total : null;
-        } catch (Exception e) {
-            System.err.println("Error extracting amount: " + e.getMessage());
-            return null;
-        }
-    }
-
-    private List<String> extractTags(String text, List<String> recordTypes) {
+    private List<String> extractTags(LocalKeywordEngine.Match match) {
         List<String> tags = new ArrayList<>();
-        String lowerText = text.toLowerCase();
         
         try {
-            // Add base tag based on types
-            for (String type : recordTypes) {
-                switch (type) {
-                    case "expense":
-                        if (!tags.contains("Expense")) tags.add("Expense");
-                        break;
-                    case "mood":
-                        if (!tags.contains("Mood")) tags.add("Mood");
-                        break;
-                    case "event":
-                        if (!tags.contains("Event")) tags.add("Event");
-                        break;
-                    case "diary":
-                        if (!tags.contains("Diary")) tags.add("Diary");
-                        break;
+            // 标签名与 LLM 提示词中的中文标签一致，按词典顺序（大类在前、细分在后）
+            for (String tagName : match.tags()) {
+                if (!tags.contains(tagName)) {
+                    tags.add(tagName);
                 }
             }
             
             if (tags.isEmpty()) {
-                tags.add("Diary");
-            }
-            
-            // Extract specific tags
-            String[][] tagKeywords = {
-                {"Food", "eat", "restaurant", "food", "hotpot", "bbq", "sushi", "pizza", "burger", "noodles", "rice", "breakfast", "lunch", "dinner"},
-                {"Transport", "taxi", "subway", "bus", "high-speed rail", "plane", "train", "drive", "bike", "walk"},
-                {"Shopping", "clothes", "shoes", "bag", "supermarket", "mall", "taobao", "jd", "online shopping"},
-                {"Entertainment", "movie", "game", "ktv", "bar", "cafe", "milk tea", "coffee", "ice cream"},
-                {"Life", "rent", "utilities", "property", "phone", "internet", "medical", "medicine", "insurance"},
-                {"Work", "meeting", "overtime", "business trip", "project", "client", "boss", "colleague"},
-            };
-            
-            for (String[] keywordGroup : tagKeywords) {
-                String tagName = keywordGroup[0];
-                for (int i = 1; i < keywordGroup.length; i++) {
-                    if (lowerText.contains(keywordGroup[i])) {
-                        if (!tags.contains(tagName)) {
-                            tags.add(tagName);
-                        }
-                        break;
-                    }
-                }
+                tags.add("未分类");
             }
             
             return tags;
         } catch (Exception e) {
             System.err.println("Error extracting tags: " + e.getMessage());
-            return Arrays.asList("Uncategorized");
+            return Arrays.asList("未分类");
         }
     }
 
-    private Integer analyzeEmotion(String text) {
-        String lowerText = text.toLowerCase();
-        int score = 0;
-        
-        // Positive emotion keywords
-        String[] positiveKeywords = {"happy", "joyful", "excited", "satisfied", "comfortable", "relaxed", "lucky", "wonderful", "great", "awesome"};
-        // Negative emotion keywords
-        String[] negativeKeywords = {"sad", "upset", "depressed", "disappointed", "angry", "anxious", "nervous", "uncomfortable", "painful", "terrible"};
-        
-        for (String keyword : positiveKeywords) {
-            if (lowerText.contains(keyword)) {
-                score += 2;
-            }
-        }
-        
-        for (String keyword : negativeKeywords) {
-            if (lowerText.contains(keyword)) {
-                score -= 2;
-            }
-        }
-        
-        // Limit score to -10 to 10
-        return Math.max(-10, Math.min(10, score));
-    }
-
     private String generateSummary(String text, List<String> recordTypes, BigDecimal amount) {
         StringBuilder summary = new StringBuilder();
         
@@ -0,0 +1,195 @@
+package com.lifeos.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeos.util.AhoCorasick;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 本地规则关键词引擎：启动时把 local-rules.json 中的类型、标签、情绪关键词编译为一个 Aho-Corasick 自动机，
+ * 一次扫描文本即可得到全部命中结果。词典可通过 lifeos.parse.local-rules 指向外部文件并调用 reload() 重新加载
+ */
+@Slf4j
+@Service
+public class LocalKeywordEngine {
+
+    @Value("${lifeos.parse.local-rules:classpath:local-rules.json}")
+    private Resource location;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile Dictionary dictionary;
+
+    @PostConstruct
+    public void init() throws Exception {
+        reload();
+    }
+
+    /**
+     * 重新加载词典，加载失败时保留当前词典并抛出异常
+     */
+    public synchronized void reload() throws Exception {
+        try (InputStream in = location.getInputStream()) {
+            dictionary = Dictionary.compile(objectMapper.readTree(in));
+        }
+        log.info("Loaded local keyword rules from {}: {} keywords, {} types, {} tags",
+            location.getDescription(), dictionary.automaton.keywordCount(),
+            dictionary.typeNames.size(), dictionary.tagNames.size());
+    }
+
+    public int keywordCount() {
+        return dictionary.automaton.keywordCount();
+    }
+
+    /**
+     * 扫描一次文本，返回命中的类型、标签和情绪分
+     */
+    public Match match(String text) {
+        Dictionary dict = dictionary;
+        long[] seen = new long[(dict.automaton.keywordCount() + 63) >>> 6];
+        int[] acc = new int[2]; // 0: 类型位图, 1: 情绪分
+        long[] tagMask = new long[1];
+
+        dict.automaton.scan(text, keyword -> {
+            acc[0] |= dict.typeBits[keyword];
+            tagMask[0] |= dict.tagBits[keyword];
+            // 同一情绪词出现多次只计一次
+            if (dict.emotion[keyword] != 0 && (seen[keyword >>> 6] & (1L << keyword)) == 0) {
+                seen[keyword >>> 6] |= 1L << keyword;
+                acc[1] += dict.emotion[keyword];
+            }
+        });
+
+        return new Match(dict, acc[0], tagMask[0], Math.max(-10, Math.min(10, acc[1])));
+    }
+
+    /**
+     * 一次匹配的结果，类型和标签按词典中的顺序返回
+     */
+    public static final class Match {
+
+        private final Dictionary dictionary;
+        private final int typeMask;
+        private final long tagMask;
+        private final int emotionScore;
+
+        private Match(Dictionary dictionary, int typeMask, long tagMask, int emotionScore) {
+            this.dictionary = dictionary;
+            this.typeMask = typeMask;
+            this.tagMask = tagMask;
+            this.emotionScore = emotionScore;
+        }
+
+        public List<String> recordTypes() {
+            return select(dictionary.typeNames, typeMask);
+        }
+
+        public List<String> tags() {
+            return select(dictionary.tagNames, tagMask);
+        }
+
+        public int emotionScore() {
+            return emotionScore;
+        }
+
+        private static List<String> select(List<String> names, long mask) {
+            if (mask == 0) {
+                return new ArrayList<>();
+            }
+            List<String> selected = new ArrayList<>(Long.bitCount(mask));
+            for (int i = 0; i < names.size(); i++) {
+                if ((mask & (1L << i)) != 0) {
+                    selected.add(names.get(i));
+                }
+            }
+            return selected;
+        }
+    }
+
+    /**
+     * 编译后的词典：关键词编号 -> 所属类型位图 / 标签位图 / 情绪权重
+     */
+    private static final class Dictionary {
+
+        private final AhoCorasick automaton;
+        private final List<String> typeNames;
+        private final List<String> tagNames;
+        private final int[] typeBits;
+        private final long[] tagBits;
+        private final int[] emotion;
+
+        private Dictionary(AhoCorasick automaton, List<String> typeNames, List<String> tagNames,
+                           int[] typeBits, long[] tagBits, int[] emotion) {
+            this.automaton = automaton;
+            this.typeNames = typeNames;
+            this.tagNames = tagNames;
+            this.typeBits = typeBits;
+            this.tagBits = tagBits;
+            this.emotion = emotion;
+        }
+
+        static Dictionary compile(JsonNode root) {
+            AhoCorasick.Builder builder = AhoCorasick.builder();
+            List<String> typeNames = new ArrayList<>();
+            List<String> tagNames = new ArrayList<>();
+            List<int[]> entries = new ArrayList<>(); // {keyword, kind, index/weight}
+
+            for (JsonNode type : root.path("types")) {
+                if (typeNames.size() == Integer.SIZE) {
+                    throw new IllegalArgumentException("Too many record types in local rules");
+                }
+                int index = typeNames.size();
+                typeNames.add(type.path("name").asText());
+                for (JsonNode keyword : type.path("keywords")) {
+                    entries.add(new int[]{builder.add(keyword.asText()), 0, index});
+                }
+            }
+            for (JsonNode tag : root.path("tags")) {
+                if (tagNames.size() == Long.SIZE) {
+                    throw new IllegalArgumentException("Too many tags in local rules");
+                }
+                int index = tagNames.size();
+                tagNames.add(tag.path("name").asText());
+                for (JsonNode keyword : tag.path("keywords")) {
+                    entries.add(new int[]{builder.add(keyword.asText()), 1, index});
+                }
+            }
+            JsonNode emotionNode = root.path("emotion");
+            int weight = emotionNode.path("weight").asInt(2);
+            for (JsonNode keyword : emotionNode.path("positive")) {
+                entries.add(new int[]{builder.add(keyword.asText()), 2, weight});
+            }
+            for (JsonNode keyword : emotionNode.path("negative")) {
+                entries.add(new int[]{builder.add(keyword.asText()), 2, -weight});
+            }
+
+            AhoCorasick automaton = builder.build();
+            int[] typeBits = new int[automaton.keywordCount()];
+            long[] tagBits = new long[automaton.keywordCount()];
+            int[] emotion = new int[automaton.keywordCount()];
+            for (int[] entry : entries) {
+                int keyword = entry[0];
+                if (keyword < 0) {
+                    continue;
+                }
+                switch (entry[1]) {
+                    case 0 -> typeBits[keyword] |= 1 << entry[2];
+                    case 1 -> tagBits[keyword] |= 1L << entry[2];
+                    default -> emotion[keyword] += entry[2];
+                }
+            }
+
+            return new Dictionary(automaton, Collections.unmodifiableList(typeNames),
+                Collections.unmodifiableList(tagNames), typeBits, tagBits, emotion);
+        }
+    }
+}
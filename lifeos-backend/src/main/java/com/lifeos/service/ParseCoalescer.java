@@ -0,0 +1,160 @@
+package com.lifeos.service;
+
+import com.lifeos.dto.AiParseResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 解析请求合并（single-flight）：同一文本的并发解析只调用一次 LLM。
+ * 节点内通过共享 CompletableFuture 合并；开启 distributed 时再用 Redis 锁跨节点合并，
+ * 未抢到锁的节点轮询解析缓存等待领头节点的结果。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ParseCoalescer {
+
+    private static final String LOCK_PREFIX = "lifeos:inflight:";
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    // 仅当锁仍属于自己时才删除，避免误删超时后被其他节点重新获取的锁
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final CacheService cacheService;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, CompletableFuture<AiParseResult>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${lifeos.parse.coalesce.distributed:true}")
+    private boolean distributed;
+
+    @Value("${lifeos.parse.coalesce.lock-ttl:30s}")
+    private Duration lockTtl;
+
+    /**
+     * 解析文本；结果会写入解析缓存，供其他节点的等待方读取
+     */
+    public AiParseResult parse(String text, Supplier<AiParseResult> parser) {
+        String key = normalize(text);
+        CompletableFuture<AiParseResult> created = new CompletableFuture<>();
+        CompletableFuture<AiParseResult> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            log.debug("Joining in-flight parse for text");
+            meterRegistry.counter("lifeos.parse.coalesced", "scope", "local").increment();
+            return await(existing);
+        }
+
+        try {
+            AiParseResult result = distributed ? parseAcrossNodes(text, parser) : parseAndCache(text, parser);
+            created.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private AiParseResult parseAcrossNodes(String text, Supplier<AiParseResult> parser) {
+        String lockKey = LOCK_PREFIX + cacheService.hashText(text);
+        String token = UUID.randomUUID().toString();
+
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtl);
+        } catch (Exception e) {
+            log.debug("Redis not available, coalescing within this node only");
+            return parseAndCache(text, parser);
+        }
+
+        if (Boolean.TRUE.equals(acquired)) {
+            try {
+                // 拿到锁前其他节点可能刚刚写好缓存
+                AiParseResult cached = cacheService.getCachedParseResult(text);
+                return cached != null ? cached : parseAndCache(text, parser);
+            } finally {
+                releaseLock(lockKey, token);
+            }
+        }
+
+        // 其他节点正在解析同一文本：轮询缓存等待结果
+        long deadline = System.currentTimeMillis() + lockTtl.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            AiParseResult cached = cacheService.getCachedParseResult(text);
+            if (cached != null) {
+                meterRegistry.counter("lifeos.parse.coalesced", "scope", "remote").increment();
+                return cached;
+            }
+            if (!isLocked(lockKey)) {
+                break;
+            }
+        }
+
+        // 领头节点失败或超时，自行解析
+        log.debug("Remote in-flight parse did not produce a result, parsing locally");
+        return parseAndCache(text, parser);
+    }
+
+    private AiParseResult parseAndCache(String text, Supplier<AiParseResult> parser) {
+        AiParseResult result = parser.get();
+        cacheService.cacheParseResult(text, result);
+        return result;
+    }
+
+    private boolean isLocked(String lockKey) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(lockKey));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void releaseLock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lockKey), token);
+        } catch (Exception e) {
+            log.debug("Failed to release parse lock: {}", e.getMessage());
+        }
+    }
+
+    private AiParseResult await(CompletableFuture<AiParseResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 与 CacheService 的缓存键保持一致的归一化
+     */
+    private String normalize(String text) {
+        return text.trim().toLowerCase();
+    }
+}
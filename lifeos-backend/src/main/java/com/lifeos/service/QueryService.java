@@ -1,15 +1,13 @@
 package com.lifeos.service;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.lifeos.dto.ApiResponse;
-import com.lifeos.entity.LifeRecord;
 import com.lifeos.mapper.LifeRecordMapper;
 
 @Service
@@ -21,7 +19,27 @@ public class QueryService {
     @Autowired
     private Text2SqlService text2SqlService;
 
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private RecordStatsService recordStatsService;
+
+    /**
+     * 查询结果按 用户数据版本 + 日期 + 查询文本 缓存，“今天”“本周”等相对时间按天失效
+     */
     public String executeQuery(String query, Long userId) throws Exception {
+        String cacheKey = cacheService.userKey("query", userId, LocalDate.now() + ":" + query.trim().toLowerCase());
+        String cached = cacheService.getCachedText(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        String result = answerQuery(query, userId);
+        cacheService.cacheText(cacheKey, result);
+        return result;
+    }
+
+    private String answerQuery(String query, Long userId) throws Exception {
         // First try Text2SQL with LLM
         try {
             String result = text2SqlService.executeNaturalLanguageQuery(query, userId);
@@ -74,57 +92,52 @@ public class QueryService {
             "• Time-based queries: \"What did I do yesterday?\"";
     }
 
+    /**
+     * 流式查询，事件定义见 Text2SqlService.streamNaturalLanguageQuery
+     */
+    public void streamQuery(String query, Long userId, BiConsumer<String, Object> onEvent) {
+        text2SqlService.streamNaturalLanguageQuery(query, userId, onEvent);
+    }
+
     private ApiResponse<String> handleExpenseQuery(String lowerQuery, String originalQuery, Long userId) {
-        List<LifeRecord> records;
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        LocalDate to = today;
         String timeDesc;
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startTime;
-
         if (lowerQuery.contains("今天") || lowerQuery.contains("今日")) {
-            startTime = now.truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today;
             timeDesc = "今天";
         } else if (lowerQuery.contains("昨天")) {
-            startTime = now.minusDays(1).truncatedTo(ChronoUnit.DAYS);
-            LocalDateTime endTime = now.truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, endTime);
+            from = to = today.minusDays(1);
             timeDesc = "昨天";
         } else if (lowerQuery.contains("本周") || lowerQuery.contains("这周") || lowerQuery.contains("星期")) {
-            startTime = now.minusDays(7);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.minusDays(7);
             timeDesc = "本周";
         } else if (lowerQuery.contains("本月") || lowerQuery.contains("这个月") || lowerQuery.contains("这月")) {
-            startTime = now.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.withDayOfMonth(1);
             timeDesc = "本月";
         } else if (lowerQuery.contains("今年") || lowerQuery.contains("这一年")) {
-            startTime = now.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.withDayOfYear(1);
             timeDesc = "今年";
         } else {
-            records = lifeRecordMapper.findByUserId(userId);
+            from = to = null;
             timeDesc = "总计";
         }
 
-        BigDecimal totalExpense = records.stream()
-            .filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense") && r.getAmount() != null)
-            .map(LifeRecord::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        RecordStatsService.Summary stats = recordStatsService.summarize(userId, from, to);
+        BigDecimal totalExpense = stats.amountOf("expense");
 
         StringBuilder categoryBreakdown = new StringBuilder();
         if (lowerQuery.contains("吃饭") || lowerQuery.contains("餐饮") || lowerQuery.contains("吃")) {
-            BigDecimal foodExpense = records.stream()
-                .filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense") && r.getAmount() != null)
-                .filter(r -> r.getTags() != null && r.getTags().toLowerCase().contains("food"))
-                .map(LifeRecord::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // 按标签细分不在日统计中，由数据库直接求和
+            BigDecimal foodExpense = lifeRecordMapper.sumAmountByTypeAndTag(userId, "expense", "餐饮",
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay().minusNanos(1) : null);
             categoryBreakdown.append(String.format("，其中餐饮消费 ¥%.2f", foodExpense));
         }
 
-        int expenseCount = (int) records.stream()
-            .filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense"))
-            .count();
+        long expenseCount = stats.countOf("expense");
 
         String response = String.format("%s消费统计：\n" +
             "💰 总支出：¥%.2f\n" +
@@ -135,81 +148,63 @@ public class QueryService {
     }
 
     private ApiResponse<String> handleCountQuery(String lowerQuery, Long userId) {
-        List<LifeRecord> records;
+        LocalDate today = LocalDate.now();
+        LocalDate from;
         String timeDesc;
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startTime;
-
         if (lowerQuery.contains("今天") || lowerQuery.contains("今日")) {
-            startTime = now.truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today;
             timeDesc = "今天";
         } else if (lowerQuery.contains("本周") || lowerQuery.contains("这周")) {
-            startTime = now.minusDays(7);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.minusDays(7);
             timeDesc = "本周";
         } else if (lowerQuery.contains("本月") || lowerQuery.contains("这个月")) {
-            startTime = now.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.withDayOfMonth(1);
             timeDesc = "本月";
         } else {
-            records = lifeRecordMapper.findByUserId(userId);
+            from = null;
             timeDesc = "总共";
         }
 
-        long totalCount = records.size();
-        long expenseCount = records.stream().filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense")).count();
-        long diaryCount = records.stream().filter(r -> r.getRecordType() != null && r.getRecordType().contains("diary")).count();
-        long eventCount = records.stream().filter(r -> r.getRecordType() != null && r.getRecordType().contains("event")).count();
-        long moodCount = records.stream().filter(r -> r.getRecordType() != null && r.getRecordType().contains("mood")).count();
+        RecordStatsService.Summary stats = recordStatsService.summarize(userId, from, from != null ? today : null);
 
         String response = String.format("%s记录了 %d 条生活轨迹：\n" +
             "💰 消费记录：%d条\n" +
             "📔 日记记录：%d条\n" +
             "📅 事件记录：%d条\n" +
             "😊 情绪记录：%d条",
-            timeDesc, totalCount, expenseCount, diaryCount, eventCount, moodCount);
+            timeDesc, stats.recordCount(), stats.countOf("expense"), stats.countOf("diary"),
+            stats.countOf("event"), stats.countOf("mood"));
 
         return ApiResponse.success(response);
     }
 
     private ApiResponse<String> handleEmotionQuery(String lowerQuery, Long userId) {
-        List<LifeRecord> records;
+        LocalDate today = LocalDate.now();
+        LocalDate from;
         String timeDesc;
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startTime;
-
         if (lowerQuery.contains("今天") || lowerQuery.contains("今日")) {
-            startTime = now.truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today;
             timeDesc = "今天";
         } else if (lowerQuery.contains("本周") || lowerQuery.contains("这周") || lowerQuery.contains("最近")) {
-            startTime = now.minusDays(7);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.minusDays(7);
             timeDesc = "最近一周";
         } else if (lowerQuery.contains("本月") || lowerQuery.contains("这个月")) {
-            startTime = now.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId, startTime, now);
+            from = today.withDayOfMonth(1);
             timeDesc = "本月";
         } else {
-            records = lifeRecordMapper.findByUserId(userId);
+            from = null;
             timeDesc = "总体";
         }
 
-        List<LifeRecord> moodRecords = records.stream()
-            .filter(r -> r.getEmotionScore() != null)
-            .toList();
+        RecordStatsService.Summary stats = recordStatsService.summarize(userId, from, from != null ? today : null);
 
-        if (moodRecords.isEmpty()) {
+        if (stats.emotionCount() == 0) {
             return ApiResponse.success(timeDesc + "还没有情绪记录哦，试着记录一下你的心情吧！");
         }
 
-        double avgEmotion = moodRecords.stream()
-            .mapToInt(LifeRecord::getEmotionScore)
-            .average()
-            .orElse(0);
+        double avgEmotion = stats.averageEmotion();
 
         String emotionDesc;
         if (avgEmotion >= 7) {
@@ -230,7 +225,7 @@ public class QueryService {
             "📊 平均情绪分数：%.1f\n" +
             "😊 情绪状态：%s\n" +
             "📝 情绪记录数：%d条",
-            timeDesc, avgEmotion, emotionDesc, moodRecords.size());
+            timeDesc, avgEmotion, emotionDesc, stats.emotionCount());
 
         return ApiResponse.success(response);
     }
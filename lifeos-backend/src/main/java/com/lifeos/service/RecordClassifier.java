@@ -0,0 +1,296 @@
+package com.lifeos.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeos.entity.LifeRecord;
+import com.lifeos.mapper.LifeRecordMapper;
+import com.lifeos.util.NaiveBayes;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 本地学习分类器：用 life_records 中 parse_source = 'llm' 的记录训练字符 n-gram 朴素贝叶斯模型，
+ * 预测记录类型、标签和情绪分，位于关键词规则和远程 LLM 之间。本地规则和分类器自己的结果不参与训练。
+ * 模型在后台定时增量训练（只读取上次训练之后的新记录），训练在副本上完成后整体替换，不阻塞预测；
+ * 每次训练后持久化到 lifeos.classifier.model-path，重启时加载。
+ * <p>
+ * 模型是全局共享的，不按用户区分：解析链路（ParseCoalescer、解析缓存和模板缓存）按文本去重、跨用户共享结果，
+ * 不携带用户 ID，按用户预测的结果会经缓存串到其他用户；单个用户的样本量也远达不到 min-docs
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecordClassifier {
+
+    private static final int FILE_MAGIC = 0x4C4F5343; // "LOSC"
+    // 版本 2：只用 LLM 标注的记录训练，版本 1 的模型含有本地规则和分类器自身的结果，加载时丢弃并重新训练
+    // 版本 3：训练进度改为 (updated_at, id)，版本 2 按 id 推进会漏掉较晚完成的异步解析记录，加载时丢弃并重新训练
+    private static final int FILE_VERSION = 3;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // 每次训练最多读取的批数，避免单次训练占用调度线程过久
+    private static final int MAX_BATCHES_PER_RUN = 20;
+    private static final int MAX_PREDICTED_TAGS = 3;
+    private static final double TAG_PROBABILITY = 0.25;
+    private static final int MIN_TAG_DOCS = 3;
+
+    private final LifeRecordMapper lifeRecordMapper;
+
+    @Value("${lifeos.classifier.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lifeos.classifier.model-path:data/record-classifier.bin}")
+    private String modelPath;
+
+    // 训练样本少于该数量时不做预测
+    @Value("${lifeos.classifier.min-docs:200}")
+    private int minDocs;
+
+    @Value("${lifeos.classifier.batch-size:1000}")
+    private int batchSize;
+
+    // 最近这段时间内更新的记录留到下一轮训练，避免未提交的事务落在已推进的水位之前
+    @Value("${lifeos.classifier.settle-delay:PT1M}")
+    private Duration settleDelay;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile Model model = Model.empty();
+
+    /**
+     * 已发布的模型，三个子模型和训练进度一起替换；训练进度是最后一条已训练记录的 (updated_at, id)
+     */
+    private record Model(LocalDateTime lastTrainedAt, long lastTrainedId,
+                         NaiveBayes types, NaiveBayes tags, NaiveBayes emotions) {
+        static Model empty() {
+            return new Model(EPOCH, 0, new NaiveBayes(), new NaiveBayes(), new NaiveBayes());
+        }
+    }
+
+    /**
+     * 预测结果，confidence 为类型的后验概率
+     */
+    public record Prediction(String recordType, double confidence, List<String> tags, int emotionScore) {}
+
+    @PostConstruct
+    public void load() {
+        Path path = Paths.get(modelPath);
+        if (!enabled || !Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("Ignoring incompatible classifier model at {}", path);
+                return;
+            }
+            LocalDateTime lastTrainedAt = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            long lastTrainedId = in.readLong();
+            model = new Model(lastTrainedAt, lastTrainedId,
+                NaiveBayes.read(in), NaiveBayes.read(in), NaiveBayes.read(in));
+            log.info("Loaded record classifier from {}: {} samples, trained up to {} / record {}",
+                path, model.types().totalDocs(), lastTrainedAt, lastTrainedId);
+        } catch (Exception e) {
+            log.warn("Failed to load classifier model from {}, will retrain: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 增量训练：读取上次训练之后解析完成的记录，在模型副本上训练后替换并持久化
+     */
+    @Scheduled(initialDelayString = "${lifeos.classifier.initial-delay:PT1M}",
+               fixedDelayString = "${lifeos.classifier.train-interval:PT10M}")
+    public void train() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Model current = model;
+            LocalDateTime lastAt = current.lastTrainedAt();
+            long lastId = current.lastTrainedId();
+            NaiveBayes types = null;
+            NaiveBayes tags = null;
+            NaiveBayes emotions = null;
+            int trained = 0;
+
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                List<LifeRecord> records =
+                    lifeRecordMapper.findParsedAfter(lastAt, lastId, settleDelay.toSeconds(), batchSize);
+                if (records.isEmpty()) {
+                    break;
+                }
+                if (types == null) {
+                    types = current.types().copy();
+                    tags = current.tags().copy();
+                    emotions = current.emotions().copy();
+                }
+                for (LifeRecord record : records) {
+                    lastAt = record.getUpdatedAt();
+                    lastId = record.getId();
+                    List<String> recordTags = parseTags(record.getTags());
+                    if (record.getContent() == null || record.getRecordType() == null) {
+                        continue;
+                    }
+                    int[] features = features(record.getContent());
+                    types.add(features, record.getRecordType());
+                    for (String tag : recordTags) {
+                        tags.add(features, tag);
+                    }
+                    if (record.getEmotionScore() != null) {
+                        emotions.add(features, emotionBucket(record.getEmotionScore()));
+                    }
+                    trained++;
+                }
+                if (records.size() < batchSize) {
+                    break;
+                }
+            }
+
+            if (types == null) {
+                return;
+            }
+            Model updated = new Model(lastAt, lastId, types, tags, emotions);
+            save(updated);
+            model = updated;
+            log.info("Record classifier trained on {} new samples ({} total), up to {} / record {}",
+                trained, types.totalDocs(), lastAt, lastId);
+        } catch (Exception e) {
+            log.warn("Record classifier training failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 预测类型、标签和情绪；模型未启用或样本不足时返回 null
+     */
+    public Prediction predict(String text) {
+        Model current = model;
+        if (!enabled || current.types().totalDocs() < minDocs || text == null || text.isBlank()) {
+            return null;
+        }
+        int[] features = features(text);
+
+        double[] typePosterior = current.types().posterior(features);
+        int best = argmax(typePosterior);
+        String recordType = current.types().labels().get(best);
+
+        List<String> predictedTags = new ArrayList<>();
+        double[] tagPosterior = current.tags().posterior(features);
+        List<String> tagLabels = current.tags().labels();
+        Integer[] order = new Integer[tagPosterior.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(tagPosterior[b], tagPosterior[a]));
+        for (int i : order) {
+            if (predictedTags.size() >= MAX_PREDICTED_TAGS || tagPosterior[i] < TAG_PROBABILITY) {
+                break;
+            }
+            if (current.tags().docCount(tagLabels.get(i)) >= MIN_TAG_DOCS) {
+                predictedTags.add(tagLabels.get(i));
+            }
+        }
+
+        // 情绪分取各分桶中心值的期望
+        double emotion = 0;
+        double[] emotionPosterior = current.emotions().posterior(features);
+        List<String> emotionLabels = current.emotions().labels();
+        for (int i = 0; i < emotionPosterior.length; i++) {
+            emotion += emotionPosterior[i] * Integer.parseInt(emotionLabels.get(i));
+        }
+
+        return new Prediction(recordType, typePosterior[best], predictedTags, (int) Math.round(emotion));
+    }
+
+    private void save(Model updated) throws Exception {
+        Path path = Paths.get(modelPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(updated.lastTrainedAt().toEpochSecond(ZoneOffset.UTC));
+            out.writeLong(updated.lastTrainedId());
+            updated.types().write(out);
+            updated.tags().write(out);
+            updated.emotions().write(out);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 字符一元和二元语法特征：忽略空白、统一小写、数字归一为 0（金额不影响分类），首尾加边界符
+     */
+    static int[] features(String text) {
+        StringBuilder normalized = new StringBuilder(text.length() + 2).append('\u0002');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            normalized.append(Character.isDigit(c) ? '0' : Character.toLowerCase(c));
+        }
+        normalized.append('\u0003');
+
+        int n = normalized.length();
+        int[] features = new int[(n - 2) + (n - 1)];
+        int k = 0;
+        for (int i = 1; i < n - 1; i++) {
+            features[k++] = normalized.charAt(i);
+        }
+        for (int i = 0; i < n - 1; i++) {
+            features[k++] = normalized.charAt(i) << 16 | normalized.charAt(i + 1);
+        }
+        return features;
+    }
+
+    /**
+     * 情绪分分桶，桶名为中心值
+     */
+    private static String emotionBucket(int score) {
+        if (score <= -6) return "-8";
+        if (score <= -3) return "-4";
+        if (score < 3) return "0";
+        if (score < 6) return "4";
+        return "8";
+    }
+
+    private List<String> parseTags(String tagsJson) {
+        if (tagsJson == null || tagsJson.isBlank()) {
+            return Collections.emptyList();
+        }
+        try {
+            return objectMapper.readValue(tagsJson, new TypeReference<List<String>>() {});
+        } catch (Exception e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static int argmax(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
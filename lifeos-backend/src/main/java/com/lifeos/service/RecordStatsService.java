@@ -0,0 +1,137 @@
+package com.lifeos.service;
+
+import com.lifeos.entity.LifeRecord;
+import com.lifeos.entity.LifeRecordDailyStats;
+import com.lifeos.mapper.LifeRecordDailyStatsMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 维护 life_record_daily_stats 日统计并提供区间汇总。
+ * 记录的增删改在同一事务内调用 recordAdded / recordRemoved / recordChanged 累加差值，
+ * 统计查询只读取区间内每天每类型一行，开销与天数成正比而与记录数无关
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecordStatsService {
+
+    // 未解析（pending）记录的类型
+    static final String UNKNOWN_TYPE = "unknown";
+
+    private final LifeRecordDailyStatsMapper statsMapper;
+
+    /**
+     * 区间内按类型的汇总
+     */
+    public record Summary(List<LifeRecordDailyStats> byType) {
+
+        public long recordCount() {
+            return byType.stream().mapToLong(LifeRecordDailyStats::getRecordCount).sum();
+        }
+
+        /**
+         * 类型名包含 typeFragment 的记录条数
+         */
+        public long countOf(String typeFragment) {
+            return byType.stream()
+                .filter(s -> s.getRecordType().contains(typeFragment))
+                .mapToLong(LifeRecordDailyStats::getRecordCount)
+                .sum();
+        }
+
+        /**
+         * 类型名包含 typeFragment 的记录金额合计
+         */
+        public BigDecimal amountOf(String typeFragment) {
+            return byType.stream()
+                .filter(s -> s.getRecordType().contains(typeFragment))
+                .map(LifeRecordDailyStats::getAmountSum)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+
+        public long emotionCount() {
+            return byType.stream().mapToLong(LifeRecordDailyStats::getEmotionCount).sum();
+        }
+
+        /**
+         * 平均情绪分，没有情绪记录时为 0
+         */
+        public double averageEmotion() {
+            long count = emotionCount();
+            return count == 0 ? 0 : (double) byType.stream().mapToLong(LifeRecordDailyStats::getEmotionSum).sum() / count;
+        }
+
+        public Map<String, Long> typeBreakdown() {
+            Map<String, Long> breakdown = new LinkedHashMap<>();
+            byType.forEach(s -> breakdown.put(s.getRecordType(), s.getRecordCount()));
+            return breakdown;
+        }
+    }
+
+    /**
+     * 用户在日期区间 [from, to] 内的统计，端点为 null 表示不限
+     */
+    public Summary summarize(Long userId, LocalDate from, LocalDate to) {
+        return new Summary(statsMapper.sumByType(userId, from, to));
+    }
+
+    public void recordAdded(LifeRecord record) {
+        apply(record, 1, record.getCreatedAt());
+    }
+
+    public void recordRemoved(LifeRecord record) {
+        apply(record, -1, record.getCreatedAt());
+    }
+
+    /**
+     * 记录被修改：减去修改前的值，加上修改后的值；修改后没有记录时间时按原记录的创建日期统计
+     */
+    public void recordChanged(LifeRecord before, LifeRecord after) {
+        apply(before, -1, before.getCreatedAt());
+        apply(after, 1, before.getCreatedAt());
+    }
+
+    /**
+     * 由 life_records 重新计算用户的全部统计，用于后台直接改表等无法得知差值的情况
+     */
+    public void rebuildUser(Long userId) {
+        statsMapper.deleteByUserId(userId);
+        statsMapper.insertFromRecords(userId);
+        log.debug("Rebuilt daily stats for user {}", userId);
+    }
+
+    private void apply(LifeRecord record, int sign, LocalDateTime createdAt) {
+        LifeRecordDailyStats delta = new LifeRecordDailyStats();
+        delta.setUserId(record.getUserId());
+        delta.setStatDate(statDate(record.getRecordTime(), createdAt));
+        delta.setRecordType(record.getRecordType() != null ? record.getRecordType() : UNKNOWN_TYPE);
+        delta.setRecordCount(sign);
+        if (record.getAmount() != null) {
+            delta.setAmountSum(sign > 0 ? record.getAmount() : record.getAmount().negate());
+        }
+        if (record.getEmotionScore() != null) {
+            delta.setEmotionSum((long) sign * record.getEmotionScore());
+            delta.setEmotionCount(sign);
+        }
+        statsMapper.applyDelta(delta);
+    }
+
+    /**
+     * 与 insertFromRecords 一致：按记录时间所在日统计，没有记录时间时按创建日期
+     */
+    private static LocalDate statDate(LocalDateTime recordTime, LocalDateTime createdAt) {
+        if (recordTime != null) {
+            return recordTime.toLocalDate();
+        }
+        return createdAt != null ? createdAt.toLocalDate() : LocalDate.now();
+    }
+}
@@ -0,0 +1,167 @@
+package com.lifeos.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeos.entity.LifeRecord;
+import com.lifeos.entity.Tag;
+import com.lifeos.mapper.LifeRecordMapper;
+import com.lifeos.mapper.RecordTagMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 维护规范化的标签存储：tags 字典 + record_tags 关联表，由 life_records.tags (JSON) 拆分而来。
+ * 记录写入时在同一事务内调用 recordAdded / recordChanged（删除由外键级联），
+ * 已有记录由 backfill 定时任务按 id 增量补齐
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecordTagService {
+
+    // 与 tags.name 列长度一致，更长的标签不入索引
+    private static final int MAX_TAG_LENGTH = 100;
+    // 每次回填最多处理的批数
+    private static final int MAX_BATCHES_PER_RUN = 10;
+
+    private final RecordTagMapper recordTagMapper;
+    private final LifeRecordMapper lifeRecordMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${lifeos.record-tags.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 回填进度：本进程已检查过的最大记录 id
+    private volatile long backfilledUpTo;
+
+    /**
+     * 新记录的标签写入关联表
+     */
+    public void recordAdded(LifeRecord record) {
+        Collection<String> names = parseTags(record.getTags());
+        if (names.isEmpty() || record.getId() == null) {
+            return;
+        }
+        List<Long> tagIds = resolveTagIds(names);
+        if (!tagIds.isEmpty()) {
+            recordTagMapper.insertRecordTags(record.getId(), record.getUserId(), tagIds);
+        }
+    }
+
+    /**
+     * 记录的标签可能已变化：删除旧关联后按新标签重写
+     */
+    public void recordChanged(LifeRecord record) {
+        recordTagMapper.deleteByRecordId(record.getId());
+        recordAdded(record);
+    }
+
+    /**
+     * 按数据库中的当前值重建某条记录的标签关联，记录不存在时不做任何事
+     */
+    public void refresh(Long recordId) {
+        LifeRecord record = lifeRecordMapper.findByIdForUpdate(recordId);
+        if (record != null) {
+            recordChanged(record);
+        }
+    }
+
+    /**
+     * 用户各标签的记录数，按记录数倒序
+     */
+    public List<Tag> tagCounts(Long userId, int limit) {
+        return recordTagMapper.countByUserId(userId, limit);
+    }
+
+    /**
+     * 用户带某标签的记录，按记录时间倒序
+     */
+    public List<LifeRecord> recordsWithTag(Long userId, String tag) {
+        return lifeRecordMapper.findByUserIdAndTag(userId, tag.trim());
+    }
+
+    /**
+     * 回填：为有标签但还没有关联的记录建立关联。每批一个事务，逐条加锁重读后写入，避免与同时进行的记录修改交错；
+     * 每次最多处理 MAX_BATCHES_PER_RUN 批，不长时间占用调度线程。追上之后每次只检查新增的 id
+     */
+    @Scheduled(initialDelayString = "${lifeos.record-tags.backfill-initial-delay:PT30S}",
+               fixedDelayString = "${lifeos.record-tags.backfill-interval:PT1M}")
+    public void backfill() {
+        try {
+            long maxId = recordTagMapper.maxRecordId();
+            int indexed = 0;
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                List<Long> ids = recordTagMapper.findUnindexedRecordIds(backfilledUpTo, maxId, backfillBatchSize);
+                if (!ids.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> ids.forEach(this::refresh));
+                    indexed += ids.size();
+                }
+                if (ids.size() < backfillBatchSize) {
+                    backfilledUpTo = maxId;
+                    break;
+                }
+                backfilledUpTo = ids.get(ids.size() - 1);
+            }
+            if (indexed > 0) {
+                log.info("Backfilled tag index for {} records, up to record {}", indexed, backfilledUpTo);
+            }
+        } catch (Exception e) {
+            log.warn("Record tag backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 标签名到字典 id：先查已有的，缺少的插入字典后再查一次
+     */
+    private List<Long> resolveTagIds(Collection<String> names) {
+        List<Tag> tags = new ArrayList<>(recordTagMapper.findByNames(names));
+        Set<String> known = tags.stream().map(t -> t.getName().toLowerCase()).collect(Collectors.toSet());
+        List<String> missing = names.stream().filter(n -> !known.contains(n.toLowerCase())).toList();
+        if (!missing.isEmpty()) {
+            recordTagMapper.insertNames(missing);
+            tags.addAll(recordTagMapper.findByNames(missing));
+        }
+        return tags.stream().map(Tag::getId).distinct().toList();
+    }
+
+    /**
+     * 解析 JSON 标签数组：去掉首尾空白，忽略空标签和过长的标签，按不区分大小写去重
+     */
+    private Collection<String> parseTags(String tagsJson) {
+        if (tagsJson == null || tagsJson.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> parsed;
+        try {
+            parsed = objectMapper.readValue(tagsJson, new TypeReference<List<String>>() {});
+        } catch (Exception e) {
+            return Collections.emptyList();
+        }
+        Map<String, String> names = new LinkedHashMap<>();
+        for (String tag : parsed) {
+            if (tag == null) {
+                continue;
+            }
+            String name = tag.trim();
+            if (!name.isEmpty() && name.length() <= MAX_TAG_LENGTH) {
+                names.putIfAbsent(name.toLowerCase(), name);
+            }
+        }
+        return names.values();
+    }
+}
@@ -4,23 +4,25 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.lifeos.entity.LifeRecord;
 import com.lifeos.entity.LlmConfig;
 import com.lifeos.mapper.LifeRecordMapper;
-import com.lifeos.mapper.LlmConfigMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class ReportService {
 
@@ -28,58 +30,183 @@ public class ReportService {
     private LifeRecordMapper lifeRecordMapper;
 
     @Autowired
-    private LlmConfigMapper llmConfigMapper;
+    private LlmConfigService llmConfigService;
+
+    @Autowired
+    private LlmHttpClient llmHttpClient;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private RecordStatsService recordStatsService;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final RestTemplate restTemplate = new RestTemplate();
 
     public String generateWeeklyReport(Long userId) {
+        String cacheKey = reportCacheKey(userId, "weekly");
+        String cached = cacheService.getCachedText(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime weekAgo = now.minusDays(7);
-        List<LifeRecord> records = lifeRecordMapper.findByUserIdAndTimeRange(userId, weekAgo, now);
+        Map<String, Object> stats = calculateStats(userId, now.minusDays(7), now);
         
-        return generateReport(records, "本周", weekAgo, now);
+        String report = generateReport(stats, "本周");
+        cacheService.cacheText(cacheKey, report);
+        return report;
     }
 
     public String generateMonthlyReport(Long userId) {
+        String cacheKey = reportCacheKey(userId, "monthly");
+        String cached = cacheService.getCachedText(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime monthAgo = now.minusDays(30);
-        List<LifeRecord> records = lifeRecordMapper.findByUserIdAndTimeRange(userId, monthAgo, now);
+        Map<String, Object> stats = calculateStats(userId, now.minusDays(30), now);
         
-        return generateReport(records, "本月", monthAgo, now);
+        String report = generateReport(stats, "本月");
+        cacheService.cacheText(cacheKey, report);
+        return report;
     }
 
-    private String generateReport(List<LifeRecord> records, String periodName, LocalDateTime start, LocalDateTime end) {
-        if (records.isEmpty()) {
+    /**
+     * 报告缓存键：用户数据版本 + 报告类型 + 日期（统计窗口按天滚动）
+     */
+    private String reportCacheKey(Long userId, String type) {
+        return cacheService.userKey("report", userId, type + ":" + LocalDate.now());
+    }
+
+    private String generateReport(Map<String, Object> stats, String periodName) {
+        if (isEmpty(stats)) {
             return periodName + "还没有任何记录哦，快开始记录你的生活吧！";
         }
 
-        LlmConfig config = llmConfigMapper.findLatest();
+        LlmConfig config = llmConfigService.getActiveConfig();
+        
+        if (config != null && config.getApiKey() != null && !config.getApiKey().trim().isEmpty()) {
+            try {
+                return generateAiReport(config, stats, periodName);
+            } catch (Exception e) {
+                log.warn("AI report generation failed: {}", e.getMessage());
+            }
+        }
+
+        return generateSimpleReport(stats, periodName);
+    }
+
+    private String generateAiReport(LlmConfig config, Map<String, Object> stats, String periodName) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(config.getApiKey());
+
+        ObjectNode requestBody = buildReportRequest(config, stats, periodName);
+        HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
         
+        ResponseEntity<String> response = llmHttpClient.restTemplate(config.getProvider()).exchange(
+            resolveApiUrl(config),
+            HttpMethod.POST,
+            entity,
+            String.class
+        );
+
+        JsonNode root = objectMapper.readTree(response.getBody());
+        return root.path("choices").get(0).path("message").path("content").asText().trim();
+    }
+
+    /**
+     * 流式生成周报，报告内容按片段回调 onChunk
+     */
+    public void streamWeeklyReport(Long userId, Consumer<String> onChunk) {
+        String cacheKey = reportCacheKey(userId, "weekly");
+        if (!replayCached(cacheKey, onChunk)) {
+            LocalDateTime now = LocalDateTime.now();
+            streamAndCache(cacheKey, calculateStats(userId, now.minusDays(7), now), "本周", onChunk);
+        }
+    }
+
+    /**
+     * 流式生成月报，报告内容按片段回调 onChunk
+     */
+    public void streamMonthlyReport(Long userId, Consumer<String> onChunk) {
+        String cacheKey = reportCacheKey(userId, "monthly");
+        if (!replayCached(cacheKey, onChunk)) {
+            LocalDateTime now = LocalDateTime.now();
+            streamAndCache(cacheKey, calculateStats(userId, now.minusDays(30), now), "本月", onChunk);
+        }
+    }
+
+    /**
+     * 缓存命中时整份报告作为一个片段输出
+     */
+    private boolean replayCached(String cacheKey, Consumer<String> onChunk) {
+        String cached = cacheService.getCachedText(cacheKey);
+        if (cached == null) {
+            return false;
+        }
+        onChunk.accept(cached);
+        return true;
+    }
+
+    /**
+     * 流式输出的同时拼接完整报告，正常结束后写入缓存（中途失败会抛出异常，不缓存）
+     */
+    private void streamAndCache(String cacheKey, Map<String, Object> stats, String periodName, Consumer<String> onChunk) {
+        StringBuilder report = new StringBuilder();
+        streamReport(stats, periodName, chunk -> {
+            report.append(chunk);
+            onChunk.accept(chunk);
+        });
+        cacheService.cacheText(cacheKey, report.toString());
+    }
+
+    private void streamReport(Map<String, Object> stats, String periodName, Consumer<String> onChunk) {
+        if (isEmpty(stats)) {
+            onChunk.accept(periodName + "还没有任何记录哦，快开始记录你的生活吧！");
+            return;
+        }
+
+        LlmConfig config = llmConfigService.getActiveConfig();
+
         if (config != null && config.getApiKey() != null && !config.getApiKey().trim().isEmpty()) {
+            AtomicBoolean started = new AtomicBoolean(false);
             try {
-                return generateAiReport(config, records, periodName);
+                llmHttpClient.streamOpenAiChat(config.getProvider(), resolveApiUrl(config), config.getApiKey(),
+                    buildReportRequest(config, stats, periodName), chunk -> {
+                        started.set(true);
+                        onChunk.accept(chunk);
+                    });
+                return;
             } catch (Exception e) {
-                System.err.println("AI report generation failed: " + e.getMessage());
+                // 已经输出了部分内容时不能再拼接简单报告，交给调用方结束流
+                if (started.get()) {
+                    throw new IllegalStateException("AI report stream interrupted: " + e.getMessage(), e);
+                }
+                log.warn("AI report streaming failed: {}", e.getMessage());
             }
         }
 
-        return generateSimpleReport(records, periodName);
+        onChunk.accept(generateSimpleReport(stats, periodName));
     }
 
-    private String generateAiReport(LlmConfig config, List<LifeRecord> records, String periodName) throws Exception {
-        String apiUrl = config.getApiUrl() != null && !config.getApiUrl().isEmpty()
+    private String resolveApiUrl(LlmConfig config) {
+        return config.getApiUrl() != null && !config.getApiUrl().isEmpty()
             ? config.getApiUrl()
             : "https://api.openai.com/v1/chat/completions";
-        
-        String model = config.getModel() != null ? config.getModel() : "gpt-3.5-turbo";
+    }
 
-        Map<String, Object> stats = calculateStats(records);
-        String statsJson = objectMapper.writeValueAsString(stats);
+    private ObjectNode buildReportRequest(LlmConfig config, Map<String, Object> stats, String periodName) {
+        String model = config.getModel() != null ? config.getModel() : "gpt-3.5-turbo";
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(config.getApiKey());
+        String statsJson;
+        try {
+            statsJson = objectMapper.writeValueAsString(stats);
+        } catch (Exception e) {
+            statsJson = stats.toString();
+        }
 
         String prompt = String.format("""
             你是一个贴心的生活管家。请根据以下用户的生活记录数据，生成一份温馨、有洞察力的%s生活总结报告。
@@ -109,26 +236,14 @@ public class ReportService {
         ObjectNode userMessage = messages.addObject();
         userMessage.put("role", "user");
         userMessage.put("content", prompt);
-
-        HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
-        
-        ResponseEntity<String> response = restTemplate.exchange(
-            apiUrl,
-            HttpMethod.POST,
-            entity,
-            String.class
-        );
-
-        JsonNode root = objectMapper.readTree(response.getBody());
-        return root.path("choices").get(0).path("message").path("content").asText().trim();
+        return requestBody;
     }
 
-    private String generateSimpleReport(List<LifeRecord> records, String periodName) {
-        Map<String, Object> stats = calculateStats(records);
-        
+    private String generateSimpleReport(Map<String, Object> stats, String periodName) {
         BigDecimal totalExpense = (BigDecimal) stats.getOrDefault("totalExpense", BigDecimal.ZERO);
         double avgEmotion = (double) stats.getOrDefault("avgEmotion", 0.0);
         int recordCount = (int) stats.getOrDefault("recordCount", 0);
+        @SuppressWarnings("unchecked") // calculateStats 放入的是 Summary.typeBreakdown()
         Map<String, Long> typeBreakdown = (Map<String, Long>) stats.get("typeBreakdown");
         
         StringBuilder report = new StringBuilder();
@@ -156,58 +271,24 @@ public class ReportService {
         return report.toString();
     }
 
-    private Map<String, Object> calculateStats(List<LifeRecord> records) {
+    private boolean isEmpty(Map<String, Object> stats) {
+        return (int) stats.getOrDefault("recordCount", 0) == 0;
+    }
+
+    /**
+     * 统计数据：条数、支出、情绪和类型分布来自日统计表（按天粒度，区间为 start 和 end 所在日期之间的整天），
+     * 常用标签在数据库中展开计数
+     */
+    private Map<String, Object> calculateStats(Long userId, LocalDateTime start, LocalDateTime end) {
         Map<String, Object> stats = new HashMap<>();
+        RecordStatsService.Summary summary = recordStatsService.summarize(userId, start.toLocalDate(), end.toLocalDate());
         
-        BigDecimal totalExpense = records.stream()
-            .filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense") && r.getAmount() != null)
-            .map(LifeRecord::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        stats.put("totalExpense", totalExpense);
-        
-        List<LifeRecord> moodRecords = records.stream()
-            .filter(r -> r.getEmotionScore() != null)
-            .toList();
-        
-        double avgEmotion = 0;
-        if (!moodRecords.isEmpty()) {
-            avgEmotion = moodRecords.stream()
-                .mapToInt(LifeRecord::getEmotionScore)
-                .average()
-                .orElse(0);
-        }
-        stats.put("avgEmotion", avgEmotion);
-        
-        Map<String, Long> typeBreakdown = records.stream()
-            .collect(Collectors.groupingBy(
-                r -> r.getRecordType() != null ? r.getRecordType() : "unknown",
-                Collectors.counting()
-            ));
-        stats.put("typeBreakdown", typeBreakdown);
-        
-        stats.put("recordCount", records.size());
+        stats.put("totalExpense", summary.amountOf("expense"));
+        stats.put("avgEmotion", summary.averageEmotion());
+        stats.put("typeBreakdown", summary.typeBreakdown());
+        stats.put("recordCount", (int) summary.recordCount());
         
-        List<String> allTags = new ArrayList<>();
-        for (LifeRecord r : records) {
-            if (r.getTags() != null) {
-                try {
-                    if (r.getTags() instanceof String) {
-                        List<String> parsed = objectMapper.readValue((String) r.getTags(),
-                            objectMapper.getTypeFactory().constructCollectionType(List.class, String.class));
-                        allTags.addAll(parsed);
-                    }
-                } catch (Exception e) {
-                    // skip
-                }
-            }
-        }
-        stats.put("topTags", allTags.stream()
-            .collect(Collectors.groupingBy(t -> t, Collectors.counting()))
-            .entrySet().stream()
-            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-            .limit(5)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList()));
+        stats.put("topTags", lifeRecordMapper.findTopTags(userId, start, end, 5));
         
         return stats;
     }
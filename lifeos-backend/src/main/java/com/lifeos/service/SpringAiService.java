@@ -1,8 +1,9 @@
 package com.lifeos.service;
 
 import com.lifeos.dto.AiParseResult;
+import com.lifeos.entity.LifeRecord;
 import com.lifeos.entity.LlmConfig;
-import com.lifeos.mapper.LlmConfigMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -13,7 +14,9 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -23,13 +26,19 @@ import java.util.Map;
 public class SpringAiService {
 
     private final ChatClient chatClient;
-    private final LlmConfigMapper llmConfigMapper;
+    private final LlmConfigService llmConfigService;
     private final LlmRoutingService llmRoutingService;
 
     private static final DateTimeFormatter DATE_TIME_FORMATTER = 
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final LlmApiService llmApiService;
+    private final MeterRegistry meterRegistry;
+    private final RecordClassifier recordClassifier;
+    private final LlmParseBatcher llmParseBatcher;
+
+    private static final String TIER_COUNTER = "lifeos.parse.tier";
+    private static final String CONFIDENCE_SUMMARY = "lifeos.parse.local.confidence";
 
     public AiParseResult parseText(String text) {
         if (text == null || text.trim().isEmpty()) {
@@ -37,26 +46,152 @@ public class SpringAiService {
         }
 
         // 获取配置
-        LlmConfig config = llmConfigMapper.findLatest();
+        LlmConfig config = llmConfigService.getActiveConfig();
         
         // 检查是否强制使用本地规则
         if (config != null && config.getUseLocalRules() != null && config.getUseLocalRules()) {
             log.info("Local rules enabled, skipping LLM API");
-            return llmRoutingService.parseText(text);
+            return llmRoutingService.parseWithLocalRules(text);
         }
 
-        // 尝试使用 LLM API
+        // 尝试使用 LLM API：本地规则置信度足够时不调用
         try {
-            if (config != null && config.getApiKey() != null && !config.getApiKey().trim().isEmpty() && !config.getApiKey().contains("dummy")) {
-                log.info("Using LLM API for parsing");
-                return llmApiService.parseWithLlm(text);
+            if (isLlmAvailable(config)) {
+                AiParseResult localResult = parseLocallyIfConfident(text);
+                if (localResult != null) {
+                    return localResult;
+                }
+                meterRegistry.counter(TIER_COUNTER, "tier", "llm").increment();
+                return parseWithLlm(text);
             }
+        } catch (Exception e) {
+            log.warn("Tiered parsing failed, falling back to local rules: {}", e.getMessage());
+        }
+
+        return llmRoutingService.parseWithLocalRules(text);
+    }
+
+    /**
+     * 已判定需要 LLM 的文本：调用 LLM，失败时回退到本地规则（LLM 已经失败过，不再经 LlmRoutingService.parseText 重试一次）
+     */
+    private AiParseResult parseWithLlm(String text) {
+        try {
+            log.info("Using LLM API for parsing");
+            return llmParseBatcher.parse(text);
+        } catch (LlmCircuitBreaker.CircuitOpenException e) {
+            log.debug("{}, using local rules", e.getMessage());
         } catch (Exception e) {
             log.warn("LLM API parsing failed, falling back to local rules: {}", e.getMessage());
         }
+        return llmRoutingService.parseWithLocalRules(text);
+    }
+
+    /**
+     * 分级解析的本地部分：本地规则或本地分类器的置信度达到 llm_config 中的阈值时返回本地结果，
+     * 否则返回 null 表示需要调用 LLM。分级结果计入 lifeos.parse.tier 指标，tier=llm 的占比即 LLM 升级率
+     */
+    public AiParseResult parseLocallyIfConfident(String text) {
+        LlmConfig config = llmConfigService.getActiveConfig();
+        if (config == null || config.getLocalConfidenceThreshold() == null || config.getLocalConfidenceThreshold() > 1) {
+            return null;
+        }
+
+        AiParseResult localResult = llmRoutingService.parseWithLocalRules(text);
+        double confidence = localResult.getConfidence() != null ? localResult.getConfidence() : 0;
+        meterRegistry.summary(CONFIDENCE_SUMMARY).record(confidence);
+        if (confidence >= config.getLocalConfidenceThreshold()) {
+            log.debug("Local parse confidence {} meets threshold, skipping LLM", confidence);
+            meterRegistry.counter(TIER_COUNTER, "tier", "local").increment();
+            return localResult;
+        }
+
+        // 第二级：用历史记录训练的本地分类器
+        AiParseResult modelResult = classify(text, localResult);
+        if (modelResult != null && modelResult.getConfidence() >= config.getLocalConfidenceThreshold()) {
+            log.debug("Classifier confidence {} meets threshold, skipping LLM", modelResult.getConfidence());
+            meterRegistry.counter(TIER_COUNTER, "tier", "model").increment();
+            return modelResult;
+        }
+        return null;
+    }
 
-        // 回退到本地规则
-        return llmRoutingService.parseText(text);
+    /**
+     * 用分类器预测类型、标签和情绪，金额、时间和摘要沿用本地规则的提取结果
+     */
+    private AiParseResult classify(String text, AiParseResult localResult) {
+        RecordClassifier.Prediction prediction = recordClassifier.predict(text);
+        if (prediction == null) {
+            return null;
+        }
+        double confidence = prediction.confidence();
+        if ("expense".equals(prediction.recordType()) && localResult.getAmount() == null) {
+            confidence *= 0.5;
+        }
+        List<String> tags = prediction.tags().isEmpty() ? localResult.getTags() : prediction.tags();
+        AiParseResult result = AiParseResult.of(List.of(prediction.recordType()), localResult.getAmount(), tags,
+                prediction.emotionScore(), localResult.getRecordTime(), localResult.getSummary());
+        result.setConfidence(confidence);
+        result.setSource(LifeRecord.PARSE_SOURCE_MODEL);
+        return result;
+    }
+
+    private boolean isLlmAvailable(LlmConfig config) {
+        return config != null && config.getApiKey() != null && !config.getApiKey().trim().isEmpty()
+                && !config.getApiKey().contains("dummy");
+    }
+
+    /**
+     * 批量解析，置信度足够的文本直接用本地结果，其余一次 LLM 调用处理；未配置 LLM 或批量调用失败时逐条回退
+     */
+    public List<AiParseResult> parseTexts(List<String> texts) {
+        LlmConfig config = llmConfigService.getActiveConfig();
+
+        boolean useLlm = isLlmAvailable(config)
+                && (config.getUseLocalRules() == null || !config.getUseLocalRules());
+
+        List<AiParseResult> results = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        // 已经过本地分级且需要 LLM 的条目，回退时不再重复分级和计数
+        boolean[] escalated = new boolean[texts.size()];
+        if (useLlm) {
+            List<String> nonEmpty = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                if (texts.get(i) != null && !texts.get(i).trim().isEmpty()) {
+                    AiParseResult localResult = parseLocallyIfConfident(texts.get(i));
+                    if (localResult != null) {
+                        results.set(i, localResult);
+                        continue;
+                    }
+                    nonEmpty.add(texts.get(i));
+                    positions.add(i);
+                    escalated[i] = true;
+                }
+            }
+            if (!nonEmpty.isEmpty()) {
+                meterRegistry.counter(TIER_COUNTER, "tier", "llm").increment(nonEmpty.size());
+                try {
+                    log.info("Using LLM API for batch parsing, size: {}", nonEmpty.size());
+                    List<AiParseResult> parsed = llmApiService.parseBatchWithLlm(nonEmpty);
+                    for (int i = 0; i < parsed.size(); i++) {
+                        results.set(positions.get(i), parsed.get(i));
+                    }
+                } catch (Exception e) {
+                    // 整批失败说明 LLM 不可用，直接走本地规则，避免逐条再请求一遍
+                    log.warn("LLM batch parsing failed, falling back to local rules: {}", e.getMessage());
+                    for (int position : positions) {
+                        results.set(position, llmRoutingService.parseWithLocalRules(texts.get(position)));
+                    }
+                }
+            }
+        }
+
+        // 批量结果中缺失的条目逐条解析
+        for (int i = 0; i < texts.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, escalated[i] ? parseWithLlm(texts.get(i)) : parseText(texts.get(i)));
+            }
+        }
+        return results;
     }
 
     private AiParseResult parseWithSpringAi(String text, LlmConfig config) {
@@ -138,7 +273,9 @@ public class SpringAiService {
                 summary = originalText.length() > 50 ? originalText.substring(0, 50) + "..." : originalText;
             }
 
-            return AiParseResult.of(recordTypes, amount, tags, emotionScore, recordTime, summary);
+            AiParseResult result = AiParseResult.of(recordTypes, amount, tags, emotionScore, recordTime, summary);
+            result.setSource(LifeRecord.PARSE_SOURCE_LLM);
+            return result;
         } catch (Exception e) {
             log.error("Failed to parse AI response: {}", e.getMessage());
             return createDefaultResult(originalText);
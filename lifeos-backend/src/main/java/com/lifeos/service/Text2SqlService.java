@@ -8,26 +8,29 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.lifeos.entity.LifeRecord;
 import com.lifeos.entity.LlmConfig;
 import com.lifeos.mapper.LifeRecordMapper;
-import com.lifeos.mapper.LlmConfigMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
+@Slf4j
 @Service
 public class Text2SqlService {
 
     @Autowired
-    private LlmConfigMapper llmConfigMapper;
+    private LlmConfigService llmConfigService;
+
+    @Autowired
+    private LlmHttpClient llmHttpClient;
 
     @Autowired
     private LifeRecordMapper lifeRecordMapper;
@@ -35,12 +38,16 @@ public class Text2SqlService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // 流式查询的事件名
+    public static final String EVENT_SQL = "sql";
+    public static final String EVENT_ROWS = "rows";
+    public static final String EVENT_CHUNK = "chunk";
+
     private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
-    private final RestTemplate restTemplate = new RestTemplate();
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public String executeNaturalLanguageQuery(String query, Long userId) {
-        LlmConfig config = llmConfigMapper.findLatest();
+        LlmConfig config = llmConfigService.getActiveConfig();
         
         if (config == null || config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
             // Fall back to keyword-based query if no LLM config
@@ -58,8 +65,7 @@ public class Text2SqlService {
             return formatResultsWithLlm(config, query, sql, resultMaps);
             
         } catch (Exception e) {
-            System.err.println("Text2SQL failed: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("Text2SQL failed, falling back to keyword query", e);
             // Fall back to keyword-based query
             return executeKeywordQuery(query, userId);
         }
@@ -95,21 +101,8 @@ public class Text2SqlService {
     }
 
     private String generateSqlWithLlm(LlmConfig config, String query, Long userId) throws Exception {
-        String apiUrl = config.getApiUrl() != null && !config.getApiUrl().isEmpty()
-            ? config.getApiUrl()
-            : "https://api.openai.com/v1";
-        
-        // 确保 URL 以 /chat/completions 结尾
-        if (!apiUrl.endsWith("/chat/completions")) {
-            if (apiUrl.endsWith("/v1")) {
-                apiUrl = apiUrl + "/chat/completions";
-            } else if (apiUrl.endsWith("/")) {
-                apiUrl = apiUrl + "chat/completions";
-            } else {
-                apiUrl = apiUrl + "/chat/completions";
-            }
-        }
-        
+        String apiUrl = resolveChatUrl(config);
+
         String model = config.getModel() != null ? config.getModel() : "gpt-3.5-turbo";
 
         HttpHeaders headers = new HttpHeaders();
@@ -127,8 +120,13 @@ public class Text2SqlService {
             - tags: TEXT, JSON array of tags
             - emotion_score: INT, -10 to 10, negative for negative emotions
             - record_time: DATETIME, when the event occurred
+            - record_date: DATE, generated from record_time (= DATE(record_time)), indexed, use for whole-day filters
             - created_at: DATETIME, when record was created
             - updated_at: DATETIME, when record was last updated
+            Indexes:
+            - (user_id, record_time, id)
+            - (user_id, record_type, record_time, amount, emotion_score)
+            - (user_id, record_date)
             """;
 
         String prompt = String.format("""
@@ -146,9 +144,15 @@ public class Text2SqlService {
             2. Use standard MySQL syntax
             3. CRITICAL: MUST include "user_id = %d" in the WHERE clause to filter by current user
             4. Use appropriate WHERE clauses for time ranges (today, this week, this month, etc.)
-            5. For date comparisons, use: DATE(record_time) = CURDATE() for today, 
-               record_time >= DATE_SUB(NOW(), INTERVAL 7 DAY) for last 7 days,
-               record_time >= DATE_SUB(NOW(), INTERVAL 30 DAY) for last 30 days
+            5. Keep predicates index-friendly: compare the raw column with constant bounds and NEVER wrap
+               record_time / record_date in functions (no DATE(record_time), YEAR(...), MONTH(...)). Use:
+               record_date = CURDATE() for today,
+               record_date = CURDATE() - INTERVAL 1 DAY for yesterday,
+               record_time >= NOW() - INTERVAL 7 DAY for last 7 days,
+               record_time >= NOW() - INTERVAL 30 DAY for last 30 days,
+               record_date >= DATE_FORMAT(CURDATE(), '%%Y-%%m-01') for this month,
+               record_date BETWEEN '2024-01-01' AND '2024-01-31' for a specific date range;
+               filter record_type with = or IN, not LIKE
             6. Always include id in SELECT if returning records
             7. Use proper aggregation functions (SUM, COUNT, AVG) when needed
             8. Handle Chinese text properly
@@ -172,7 +176,7 @@ public class Text2SqlService {
 
         HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
         
-        ResponseEntity<String> response = restTemplate.exchange(
+        ResponseEntity<String> response = llmHttpClient.restTemplate(config.getProvider()).exchange(
             apiUrl,
             HttpMethod.POST,
             entity,
@@ -194,6 +198,60 @@ public class Text2SqlService {
             return "没有找到相关记录。";
         }
 
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(config.getApiKey());
+
+        ObjectNode requestBody = buildFormatRequest(config, originalQuery, sql, results);
+        HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
+        
+        ResponseEntity<String> response = llmHttpClient.restTemplate(config.getProvider()).exchange(
+            resolveChatUrl(config),
+            HttpMethod.POST,
+            entity,
+            String.class
+        );
+
+        JsonNode root = objectMapper.readTree(response.getBody());
+        return root.path("choices").get(0).path("message").path("content").asText().trim();
+    }
+
+    /**
+     * 流式自然语言查询：依次回调 sql（生成的 SQL）、rows（结果行数）事件，
+     * 之后以 chunk 事件逐段输出格式化后的回答。无 LLM 配置或生成 SQL 失败时以一条 chunk 输出关键词查询结果
+     */
+    public void streamNaturalLanguageQuery(String query, Long userId, BiConsumer<String, Object> onEvent) {
+        LlmConfig config = llmConfigService.getActiveConfig();
+
+        if (config == null || config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+            onEvent.accept(EVENT_CHUNK, executeKeywordQuery(query, userId));
+            return;
+        }
+
+        List<Map<String, Object>> resultMaps;
+        String sql;
+        try {
+            sql = generateSqlWithLlm(config, query, userId);
+            resultMaps = executeGenericQuery(sql);
+        } catch (Exception e) {
+            log.warn("Text2SQL failed: {}", e.getMessage());
+            onEvent.accept(EVENT_CHUNK, executeKeywordQuery(query, userId));
+            return;
+        }
+
+        onEvent.accept(EVENT_SQL, sql);
+        onEvent.accept(EVENT_ROWS, resultMaps.size());
+
+        if (resultMaps.isEmpty()) {
+            onEvent.accept(EVENT_CHUNK, "没有找到相关记录。");
+            return;
+        }
+
+        llmHttpClient.streamOpenAiChat(config.getProvider(), resolveChatUrl(config), config.getApiKey(),
+            buildFormatRequest(config, query, sql, resultMaps), chunk -> onEvent.accept(EVENT_CHUNK, chunk));
+    }
+
+    private String resolveChatUrl(LlmConfig config) {
         String apiUrl = config.getApiUrl() != null && !config.getApiUrl().isEmpty()
             ? config.getApiUrl()
             : "https://api.openai.com/v1";
@@ -208,14 +266,18 @@ public class Text2SqlService {
                 apiUrl = apiUrl + "/chat/completions";
             }
         }
-        
-        String model = config.getModel() != null ? config.getModel() : "gpt-3.5-turbo";
+        return apiUrl;
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(config.getApiKey());
+    private ObjectNode buildFormatRequest(LlmConfig config, String originalQuery, String sql, List<Map<String, Object>> results) {
+        String model = config.getModel() != null ? config.getModel() : "gpt-3.5-turbo";
 
-        String resultsJson = objectMapper.writeValueAsString(results);
+        String resultsJson;
+        try {
+            resultsJson = objectMapper.writeValueAsString(results);
+        } catch (Exception e) {
+            resultsJson = results.toString();
+        }
         
         String prompt = String.format("""
             User asked: "%s"
@@ -251,18 +313,7 @@ public class Text2SqlService {
         ObjectNode userMessage = messages.addObject();
         userMessage.put("role", "user");
         userMessage.put("content", prompt);
-
-        HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
-        
-        ResponseEntity<String> response = restTemplate.exchange(
-            apiUrl,
-            HttpMethod.POST,
-            entity,
-            String.class
-        );
-
-        JsonNode root = objectMapper.readTree(response.getBody());
-        return root.path("choices").get(0).path("message").path("content").asText().trim();
+        return requestBody;
     }
 
     private String executeKeywordQuery(String query, Long userId) {
@@ -288,50 +339,40 @@ public class Text2SqlService {
     }
 
     private String handleExpenseQuery(String lowerQuery, Long userId) {
-        List<LifeRecord> records;
         String timeDesc;
+        LocalDateTime startTime;
+        LocalDateTime endTime;
         
         LocalDateTime now = LocalDateTime.now();
         
         if (lowerQuery.contains("今天") || lowerQuery.contains("今日")) {
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId,
-                now.toLocalDate().atStartOfDay(),
-                now
-            );
+            startTime = now.toLocalDate().atStartOfDay();
+            endTime = now;
             timeDesc = "今天";
         } else if (lowerQuery.contains("本周") || lowerQuery.contains("这周")) {
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId,
-                now.minusDays(7),
-                now
-            );
+            startTime = now.minusDays(7);
+            endTime = now;
             timeDesc = "本周";
         } else if (lowerQuery.contains("本月") || lowerQuery.contains("这个月")) {
-            records = lifeRecordMapper.findByUserIdAndTimeRange(userId,
-                now.withDayOfMonth(1).toLocalDate().atStartOfDay(),
-                now
-            );
+            startTime = now.withDayOfMonth(1).toLocalDate().atStartOfDay();
+            endTime = now;
             timeDesc = "本月";
         } else {
-            records = lifeRecordMapper.findByUserId(userId);
+            startTime = null;
+            endTime = null;
             timeDesc = "总计";
         }
         
-        BigDecimal total = records.stream()
-            .filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense") && r.getAmount() != null)
-            .map(LifeRecord::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        long count = records.stream()
-            .filter(r -> r.getRecordType() != null && r.getRecordType().contains("expense"))
-            .count();
+        // 由数据库按类型聚合，不再把整段记录读入内存
+        RecordStatsService.Summary stats = new RecordStatsService.Summary(
+            lifeRecordMapper.aggregateByType(userId, startTime, endTime));
         
         return String.format("%s消费统计：\n💰 总支出：¥%.2f\n📝 消费笔数：%d笔", 
-            timeDesc, total, count);
+            timeDesc, stats.amountOf("expense"), stats.countOf("expense"));
     }
 
     private String handleCountQuery(String lowerQuery, Long userId) {
-        List<LifeRecord> records = lifeRecordMapper.findByUserId(userId);
-        return String.format("共找到 %d 条记录", records.size());
+        return String.format("共找到 %d 条记录", lifeRecordMapper.countByUserId(userId));
     }
 
     private String handleEmotionQuery(String lowerQuery, Long userId) {
@@ -1,17 +1,35 @@
 package com.lifeos.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lifeos.dto.AiParseResult;
+import com.lifeos.dto.RecordPage;
 import com.lifeos.entity.LifeRecord;
 import com.lifeos.mapper.LifeRecordMapper;
+import com.lifeos.util.RecordCursor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,33 +40,313 @@ import lombok.extern.slf4j.Slf4j;
 public class TrackService {
 
     private final SpringAiService springAiService;
+    private final LlmRoutingService llmRoutingService;
     private final LifeRecordMapper lifeRecordMapper;
     private final CacheService cacheService;
+    private final ParseCoalescer parseCoalescer;
+    @Qualifier("parseExecutor")
+    private final ThreadPoolTaskExecutor parseExecutor;
+    @Qualifier("speculativeParseExecutor")
+    private final ThreadPoolTaskExecutor speculativeParseExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final DataVersionService dataVersionService;
+    private final RecordStatsService recordStatsService;
+    private final RecordTagService recordTagService;
+
+    private static final String PARSE_TIMER = "lifeos.track.parse";
+    private static final String PERSIST_TIMER = "lifeos.track.persist";
+    private static final String SPECULATIVE_COUNTER = "lifeos.parse.speculative";
+
+    // 批量记录每块的条数，即一次 LLM 调用 / 一条 INSERT 覆盖的记录数
+    private static final int BATCH_CHUNK_SIZE = 20;
+    // 启动时最多恢复的 pending 记录数
+    private static final int RESUME_LIMIT = 500;
+
+    @Value("${lifeos.parse.llm-budget:2s}")
+    private Duration llmBudget;
+
+    @Value("${lifeos.records.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${lifeos.records.max-page-size:200}")
+    private int maxPageSize;
 
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    @Transactional
     public LifeRecord processText(String text) throws Exception {
         return processText(text, 1L); // 默认用户ID为1
     }
 
-    @Transactional
+    /**
+     * 解析阶段不开事务，缓存查询和 LLM 调用期间不占用数据库连接；
+     * 持久化阶段是只包含写库的短事务，耗时见 lifeos.track.persist 指标
+     */
     public LifeRecord processText(String text, Long userId) throws Exception {
+        Timer.Sample parseSample = Timer.start(meterRegistry);
+        BudgetedParse parse = parseWithinBudget(text);
+        parseSample.stop(meterRegistry.timer(PARSE_TIMER));
+        
+        LifeRecord record = buildRecord(text, parse.result(), userId);
+        if (parse.late() != null) {
+            record.setParseStatus(LifeRecord.PARSE_STATUS_PROVISIONAL);
+        }
+        
+        persist(() -> {
+            lifeRecordMapper.insert(record);
+            recordStatsService.recordAdded(record);
+            recordTagService.recordAdded(record);
+        });
+        dataVersionService.bump(userId);
+        
+        checkEmotionAndCare(record);
+
+        // 入库后再挂回调，保证升级时记录已存在
+        if (parse.late() != null) {
+            parse.late().whenComplete((llmResult, e) -> upgradeProvisional(record, llmResult, e));
+        }
+        
+        return record;
+    }
+
+    /**
+     * 解析结果；late 不为 null 表示 LLM 未在预算内返回，result 为本地规则结果，late 完成后用于升级记录
+     */
+    private record BudgetedParse(AiParseResult result, CompletableFuture<AiParseResult> late) {}
+
+    /**
+     * 缓存未命中时在后台线程发起 LLM 解析，同时在当前线程用本地规则解析；
+     * LLM 在 llmBudget 内返回则采用 LLM 结果，否则先返回本地规则结果
+     */
+    private BudgetedParse parseWithinBudget(String text) {
+        AiParseResult cachedResult = cacheService.getCachedParseResult(text);
+        if (cachedResult != null) {
+            log.info("Using cached parse result for text");
+            return new BudgetedParse(cachedResult, null);
+        }
+        if (llmBudget.isZero() || llmBudget.isNegative()) {
+            return new BudgetedParse(resolveParseResult(text), null);
+        }
+
+        long deadline = System.nanoTime() + llmBudget.toNanos();
+        CompletableFuture<AiParseResult> llmParse;
+        try {
+            llmParse = CompletableFuture.supplyAsync(
+                () -> parseCoalescer.parse(text, () -> springAiService.parseText(text)), speculativeParseExecutor);
+        } catch (RejectedExecutionException e) {
+            // 限时解析线程池已满（不排队），按原方式在当前线程解析
+            return new BudgetedParse(resolveParseResult(text), null);
+        }
+
+        AiParseResult localResult = llmRoutingService.parseWithLocalRules(text);
+        try {
+            AiParseResult llmResult = llmParse.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            meterRegistry.counter(SPECULATIVE_COUNTER, "outcome", "llm").increment();
+            return new BudgetedParse(llmResult, null);
+        } catch (TimeoutException e) {
+            log.info("LLM parse exceeded budget of {}ms, saving local result first", llmBudget.toMillis());
+            meterRegistry.counter(SPECULATIVE_COUNTER, "outcome", "local").increment();
+            return new BudgetedParse(localResult, llmParse);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BudgetedParse(localResult, null);
+        } catch (ExecutionException e) {
+            log.warn("LLM parse failed, using local result: {}", e.getCause().getMessage());
+            meterRegistry.counter(SPECULATIVE_COUNTER, "outcome", "error").increment();
+            return new BudgetedParse(localResult, null);
+        }
+    }
+
+    private void upgradeProvisional(LifeRecord provisional, AiParseResult llmResult, Throwable error) {
+        if (error != null) {
+            // LLM 最终失败，本地规则结果即为最终结果
+            log.warn("Late LLM parse failed for record {}: {}", provisional.getId(), error.getMessage());
+            if (lifeRecordMapper.finishProvisional(provisional.getId()) > 0) {
+                dataVersionService.bump(provisional.getUserId());
+            }
+            return;
+        }
+        try {
+            LifeRecord record = buildRecord(provisional.getContent(), llmResult, provisional.getUserId());
+            record.setId(provisional.getId());
+            int[] updated = new int[1];
+            persist(() -> {
+                LifeRecord before = lifeRecordMapper.findByIdForUpdate(record.getId());
+                updated[0] = lifeRecordMapper.upgradeProvisional(record);
+                if (updated[0] > 0) {
+                    recordStatsService.recordChanged(before, record);
+                    recordTagService.recordChanged(record);
+                }
+            });
+            if (updated[0] > 0) {
+                dataVersionService.bump(record.getUserId());
+                checkEmotionAndCare(record);
+                log.debug("Record {} upgraded with late LLM result", record.getId());
+            } else {
+                log.debug("Record {} changed before late LLM result arrived, skipping upgrade", record.getId());
+            }
+        } catch (Exception e) {
+            log.error("Failed to upgrade record {}: {}", provisional.getId(), e.getMessage());
+        }
+    }
+
+    private AiParseResult resolveParseResult(String text) {
         // 先检查缓存
         AiParseResult cachedResult = cacheService.getCachedParseResult(text);
-        AiParseResult parseResult;
-        
         if (cachedResult != null) {
             log.info("Using cached parse result for text");
-            parseResult = cachedResult;
-        } else {
-            // 使用 Spring AI 解析
-            parseResult = springAiService.parseText(text);
-            // 缓存结果
-            cacheService.cacheParseResult(text, parseResult);
+            return cachedResult;
+        }
+        // 同一文本的并发请求合并为一次 Spring AI 解析，结果由 ParseCoalescer 写入缓存
+        return parseCoalescer.parse(text, () -> springAiService.parseText(text));
+    }
+
+    /**
+     * 在短事务中执行写库操作并记录事务（即连接占用）时长
+     */
+    private void persist(Runnable work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            transactionTemplate.executeWithoutResult(status -> work.run());
+        } finally {
+            sample.stop(meterRegistry.timer(PERSIST_TIMER));
+        }
+    }
+
+    /**
+     * 异步记录：先以 pending 状态入库并立即返回，解析在后台线程池完成后回写
+     */
+    public LifeRecord processTextAsync(String text, Long userId) {
+        LifeRecord record = new LifeRecord();
+        record.setContent(text);
+        record.setUserId(userId);
+        record.setRecordTime(LocalDateTime.now());
+        record.setParseStatus(LifeRecord.PARSE_STATUS_PENDING);
+        persist(() -> {
+            lifeRecordMapper.insertPending(record);
+            recordStatsService.recordAdded(record);
+        });
+        dataVersionService.bump(userId);
+
+        submitParse(record);
+        return record;
+    }
+
+    private void submitParse(LifeRecord pending) {
+        try {
+            parseExecutor.execute(() -> completeParse(pending));
+        } catch (TaskRejectedException e) {
+            // 线程池已满：在调用线程上用本地规则完成解析，不再等待 LLM
+            log.warn("Parse executor saturated, parsing record {} with local rules", pending.getId());
+            saveParseResult(pending, llmRoutingService.parseWithLocalRules(pending.getContent()));
+        }
+    }
+
+    private void completeParse(LifeRecord pending) {
+        try {
+            saveParseResult(pending, resolveParseResult(pending.getContent()));
+        } catch (Exception e) {
+            log.error("Async parse failed for record {}: {}", pending.getId(), e.getMessage());
+            lifeRecordMapper.updateParseStatus(pending.getId(), LifeRecord.PARSE_STATUS_FAILED);
+            dataVersionService.bump(pending.getUserId());
+        }
+    }
+
+    private void saveParseResult(LifeRecord pending, AiParseResult parseResult) {
+        LifeRecord record = buildRecord(pending.getContent(), parseResult, pending.getUserId());
+        record.setId(pending.getId());
+        record.setParseStatus(LifeRecord.PARSE_STATUS_DONE);
+        persist(() -> {
+            LifeRecord before = lifeRecordMapper.findByIdForUpdate(record.getId());
+            if (before != null) {
+                lifeRecordMapper.updateParseResult(record);
+                recordStatsService.recordChanged(before, record);
+                recordTagService.recordChanged(record);
+            }
+        });
+        dataVersionService.bump(record.getUserId());
+
+        checkEmotionAndCare(record);
+        log.debug("Async parse finished for record {}", record.getId());
+    }
+
+    /**
+     * 启动时重新提交上次停机前未完成解析的记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingParses() {
+        try {
+            List<LifeRecord> pending = lifeRecordMapper.findByParseStatus(LifeRecord.PARSE_STATUS_PENDING, RESUME_LIMIT);
+            if (!pending.isEmpty()) {
+                log.info("Resuming {} pending parses", pending.size());
+                pending.forEach(this::submitParse);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to resume pending parses: {}", e.getMessage());
+        }
+    }
+
+    public LifeRecord getRecord(Long id, Long userId) {
+        LifeRecord record = lifeRecordMapper.findById(id);
+        if (record == null || !userId.equals(record.getUserId())) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * 批量记录：按块解析（每块一次 LLM 调用）并以多行 INSERT 写入，每块一次提交
+     */
+    public List<LifeRecord> processBatch(List<String> texts, Long userId) {
+        List<LifeRecord> saved = new ArrayList<>(texts.size());
+        
+        for (int start = 0; start < texts.size(); start += BATCH_CHUNK_SIZE) {
+            List<String> chunk = texts.subList(start, Math.min(start + BATCH_CHUNK_SIZE, texts.size()));
+            
+            // 先查缓存，只把未命中的文本交给解析器
+            AiParseResult[] parseResults = new AiParseResult[chunk.size()];
+            List<String> misses = new ArrayList<>();
+            List<Integer> missIndexes = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                AiParseResult cachedResult = cacheService.getCachedParseResult(chunk.get(i));
+                if (cachedResult != null) {
+                    parseResults[i] = cachedResult;
+                } else {
+                    misses.add(chunk.get(i));
+                    missIndexes.add(i);
+                }
+            }
+            
+            if (!misses.isEmpty()) {
+                List<AiParseResult> parsed = springAiService.parseTexts(misses);
+                for (int i = 0; i < parsed.size(); i++) {
+                    parseResults[missIndexes.get(i)] = parsed.get(i);
+                    cacheService.cacheParseResult(misses.get(i), parsed.get(i));
+                }
+            }
+            
+            List<LifeRecord> records = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                records.add(buildRecord(chunk.get(i), parseResults[i], userId));
+            }
+            
+            persist(() -> {
+                lifeRecordMapper.insertBatch(records);
+                records.forEach(recordStatsService::recordAdded);
+                records.forEach(recordTagService::recordAdded);
+            });
+            dataVersionService.bump(userId);
+            log.info("Batch inserted {} records for user {}", records.size(), userId);
+            
+            records.forEach(this::checkEmotionAndCare);
+            saved.addAll(records);
         }
         
+        return saved;
+    }
+
+    private LifeRecord buildRecord(String text, AiParseResult parseResult, Long userId) {
         LocalDateTime recordTime = LocalDateTime.now();
         try {
             if (parseResult.getRecordTime() != null) {
@@ -74,11 +372,7 @@ public class TrackService {
             recordTime
         );
         record.setUserId(userId);
-        
-        lifeRecordMapper.insert(record);
-        
-        checkEmotionAndCare(record);
-        
+        record.setParseSource(parseResult.getSource());
         return record;
     }
 
@@ -115,20 +409,59 @@ public class TrackService {
         return lifeRecordMapper.findAll();
     }
 
-    public List<LifeRecord> getRecordsByUserId(Long userId) {
-        return lifeRecordMapper.findByUserId(userId);
+    /**
+     * 用户记录列表的一页，按 (record_time, id) 倒序键集分页；每页按 数据版本 + 游标 + 页大小 缓存。
+     * 多读一条用于判断是否还有下一页
+     */
+    public RecordPage getRecordPage(Long userId, String cursor, Integer size) {
+        int pageSize = size != null ? Math.max(1, Math.min(size, maxPageSize)) : defaultPageSize;
+        RecordCursor.Position after = cursor != null && !cursor.isBlank() ? RecordCursor.decode(cursor) : null;
+
+        String cacheKey = cacheService.userKey("records", userId, (after != null ? cursor : "first") + ":" + pageSize);
+        List<LifeRecord> rows = cacheService.getCachedRecords(cacheKey);
+        if (rows == null) {
+            rows = lifeRecordMapper.findPageByUserId(userId,
+                after != null ? after.recordTime() : null,
+                after != null ? after.id() : null,
+                pageSize + 1);
+            cacheService.cacheRecords(cacheKey, rows);
+        }
+
+        if (rows.size() <= pageSize) {
+            return new RecordPage(rows, null);
+        }
+        List<LifeRecord> items = new ArrayList<>(rows.subList(0, pageSize));
+        LifeRecord last = items.get(pageSize - 1);
+        return new RecordPage(items, RecordCursor.encode(last.getRecordTime(), last.getId()));
     }
 
     public void deleteRecord(Long id) {
-        lifeRecordMapper.deleteById(id, 1L); // 默认用户ID为1
+        deleteRecord(id, 1L); // 默认用户ID为1
     }
 
     public void deleteRecord(Long id, Long userId) {
-        lifeRecordMapper.deleteById(id, userId);
+        persist(() -> {
+            LifeRecord before = lifeRecordMapper.findByIdForUpdate(id);
+            if (before != null && lifeRecordMapper.deleteById(id, userId) > 0) {
+                recordStatsService.recordRemoved(before);
+            }
+        });
+        dataVersionService.bump(userId);
     }
 
     public void updateRecord(Long id, LifeRecord record) {
         record.setId(id);
-        lifeRecordMapper.update(record);
+        persist(() -> {
+            LifeRecord before = lifeRecordMapper.findByIdForUpdate(id);
+            if (before != null && record.getRecordTime() == null) {
+                // record_time 不能为空，未传时保留原记录时间（与 update 语句一致）
+                record.setRecordTime(before.getRecordTime());
+            }
+            if (before != null && lifeRecordMapper.update(record) > 0) {
+                recordStatsService.recordChanged(before, record);
+                recordTagService.recordChanged(record);
+            }
+        });
+        dataVersionService.bump(record.getUserId());
     }
 }
@@ -0,0 +1,156 @@
+package com.lifeos.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick 多模式匹配自动机：一次扫描文本即可找出所有关键词（含重叠匹配），不区分大小写。
+ * 构建后不可变，可在多线程间共享
+ */
+public final class AhoCorasick {
+
+    // 每个状态的出边按字符排序后存放，扫描时二分查找
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    // 每个状态命中的关键词编号（已合并失败链上的输出）
+    private final int[][] outputs;
+    private final int keywordCount;
+
+    private AhoCorasick(char[][] edgeChars, int[][] edgeTargets, int[] fail, int[][] outputs, int keywordCount) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputs = outputs;
+        this.keywordCount = keywordCount;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int keywordCount() {
+        return keywordCount;
+    }
+
+    /**
+     * 扫描文本，每次匹配回调关键词编号（即 Builder.add 的返回值），同一关键词出现多次会回调多次
+     */
+    public void scan(CharSequence text, IntConsumer onMatch) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = Math.max(next, 0);
+            for (int keyword : outputs[state]) {
+                onMatch.accept(keyword);
+            }
+        }
+    }
+
+    private int transition(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index >= 0 ? edgeTargets[state][index] : -1;
+    }
+
+    public static final class Builder {
+
+        private final List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+        private final List<List<Integer>> terminals = new ArrayList<>();
+        private final Map<String, Integer> keywordIds = new HashMap<>();
+
+        private Builder() {
+            newState();
+        }
+
+        /**
+         * 添加关键词并返回其编号；同一关键词（忽略大小写）重复添加返回相同编号，空串返回 -1
+         */
+        public int add(String keyword) {
+            if (keyword == null || keyword.isEmpty()) {
+                return -1;
+            }
+            String normalized = keyword.toLowerCase();
+            Integer existing = keywordIds.get(normalized);
+            if (existing != null) {
+                return existing;
+            }
+            int id = keywordIds.size();
+            keywordIds.put(normalized, id);
+
+            int state = 0;
+            for (int i = 0; i < normalized.length(); i++) {
+                char c = normalized.charAt(i);
+                Integer next = edges.get(state).get(c);
+                if (next == null) {
+                    next = newState();
+                    edges.get(state).put(c, next);
+                }
+                state = next;
+            }
+            terminals.get(state).add(id);
+            return id;
+        }
+
+        public AhoCorasick build() {
+            int size = edges.size();
+            char[][] edgeChars = new char[size][];
+            int[][] edgeTargets = new int[size][];
+            for (int s = 0; s < size; s++) {
+                TreeMap<Character, Integer> out = edges.get(s);
+                edgeChars[s] = new char[out.size()];
+                edgeTargets[s] = new int[out.size()];
+                int i = 0;
+                for (Map.Entry<Character, Integer> e : out.entrySet()) {
+                    edgeChars[s][i] = e.getKey();
+                    edgeTargets[s][i] = e.getValue();
+                    i++;
+                }
+            }
+
+            // 按层次遍历计算失败指针，并把失败状态的输出并入当前状态
+            int[] fail = new int[size];
+            List<List<Integer>> merged = new ArrayList<>(size);
+            for (List<Integer> t : terminals) {
+                merged.add(new ArrayList<>(t));
+            }
+            Queue<Integer> queue = new ArrayDeque<>(edges.get(0).values());
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> e : edges.get(state).entrySet()) {
+                    int child = e.getValue();
+                    int f = fail[state];
+                    Integer target;
+                    while ((target = edges.get(f).get(e.getKey())) == null && f != 0) {
+                        f = fail[f];
+                    }
+                    fail[child] = target != null && target != child ? target : 0;
+                    merged.get(child).addAll(merged.get(fail[child]));
+                    queue.add(child);
+                }
+            }
+
+            int[][] outputs = new int[size][];
+            for (int s = 0; s < size; s++) {
+                outputs[s] = merged.get(s).stream().mapToInt(Integer::intValue).toArray();
+            }
+            return new AhoCorasick(edgeChars, edgeTargets, fail, outputs, keywordIds.size());
+        }
+
+        private int newState() {
+            edges.add(new TreeMap<>());
+            terminals.add(new ArrayList<>());
+            return edges.size() - 1;
+        }
+    }
+}
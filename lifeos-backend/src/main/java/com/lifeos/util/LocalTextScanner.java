@@ -0,0 +1,597 @@
+package com.lifeos.util;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地解析用的单趟文本扫描器，不使用正则，一次遍历同时提取：
+ * <ul>
+ *   <li>金额：阿拉伯数字或中文数字 + 元/块/块钱/毛/角，¥/￥/$ 前缀，以及 yuan/rmb/dollar 等英文单位，多笔金额累加</li>
+ *   <li>时间：今天/昨天/前天/明天、今早/昨晚、上周三/这周五/周日、早上/下午/晚上 + N点(半)</li>
+ * </ul>
+ * 金额以分为单位用 long 累加，只在最后创建一个 BigDecimal。
+ * template() 在同一趟扫描中生成解析缓存用的文本模板
+ */
+public final class LocalTextScanner {
+
+    /**
+     * 扫描结果；amount 为 null 表示没有金额，recordTime 为 null 表示没有时间表达
+     */
+    public record Result(BigDecimal amount, LocalDateTime recordTime) {}
+
+    /**
+     * 文本模板：金额和日期替换为占位符、去掉空白并转小写后的 key，
+     * amountSlots 为被替换的金额原文（按出现顺序），values 为同一趟扫描提取的金额和时间。
+     * 钟点和早上/晚上等时段保留原文，它们会影响餐次等标签
+     */
+    public record Template(String key, List<String> amountSlots, Result values) {}
+
+    private static final char AMOUNT_PLACEHOLDER = '\u0001';
+    private static final char DATE_PLACEHOLDER = '\u0002';
+
+    private static final String[] ENGLISH_UNITS = {"yuan", "rmb", "dollars", "dollar", "bucks", "blocks", "block"};
+
+    // 时段：默认小时，及 N 点是否按下午处理
+    private static final int PERIOD_NONE = 0;
+    private static final int PERIOD_DAWN = 1;
+    private static final int PERIOD_MORNING = 2;
+    private static final int PERIOD_FORENOON = 3;
+    private static final int PERIOD_NOON = 4;
+    private static final int PERIOD_AFTERNOON = 5;
+    private static final int PERIOD_EVENING = 6;
+    private static final int[] PERIOD_DEFAULT_HOUR = {-1, 5, 8, 10, 12, 15, 20};
+
+    private LocalTextScanner() {}
+
+    public static Result scan(String text, LocalDateTime now) {
+        return new Scan(text, now, false).run();
+    }
+
+    public static Template template(String text, LocalDateTime now) {
+        Scan scan = new Scan(text, now, true);
+        Result values = scan.run();
+        return new Template(scan.template.toString(), scan.amountSlots, values);
+    }
+
+    /**
+     * 一次扫描的状态，数字解析结果放在 numberValue / numberEnd 中，避免为每个数字创建对象
+     */
+    private static final class Scan {
+
+        private final String text;
+        private final int length;
+        private final LocalDateTime now;
+
+        private long cents;
+        private boolean amountFound;
+
+        private LocalDate date;
+        private int period = PERIOD_NONE;
+        private int hour = -1;
+        private int minute;
+
+        // 最近一次 parseArabic / parseChinese 的结果：值（分）与结束位置
+        private long numberValue;
+        private int numberEnd;
+        private boolean numberHasFraction;
+
+        // 模板：只在 template() 中使用；每趟扫描步骤结束时根据计数变化判断是否命中金额或日期
+        private final StringBuilder template;
+        private final List<String> amountSlots;
+        private int amountTokens;
+        private int dateTokens;
+        private int datePeriod = PERIOD_NONE;
+
+        Scan(String text, LocalDateTime now, boolean withTemplate) {
+            this.text = text;
+            this.length = text.length();
+            this.now = now;
+            this.template = withTemplate ? new StringBuilder(length) : null;
+            this.amountSlots = withTemplate ? new ArrayList<>() : null;
+        }
+
+        Result run() {
+            int i = 0;
+            while (i < length) {
+                char c = text.charAt(i);
+                int amountsBefore = amountTokens;
+                int datesBefore = dateTokens;
+                int next;
+                if (c == '¥' || c == '￥' || c == '$') {
+                    next = scanPrefixedAmount(i + 1);
+                } else if (isArabicDigit(c) || isChineseNumeral(c)) {
+                    next = scanNumber(i);
+                } else {
+                    next = scanTimeWord(i);
+                }
+                next = next > i ? next : i + 1;
+                if (template != null) {
+                    appendTemplate(i, next, amountTokens != amountsBefore, dateTokens != datesBefore);
+                }
+                i = next;
+            }
+            return new Result(amountFound ? BigDecimal.valueOf(cents, 2) : null, resolveTime());
+        }
+
+        private void appendTemplate(int start, int end, boolean amount, boolean date) {
+            if (amount) {
+                template.append(AMOUNT_PLACEHOLDER);
+                amountSlots.add(text.substring(start, end));
+                return;
+            }
+            if (date) {
+                // 今早/昨晚 等同时带时段，时段保留在模板中
+                template.append(DATE_PLACEHOLDER);
+                if (datePeriod != PERIOD_NONE) {
+                    template.append((char) ('0' + datePeriod));
+                }
+                return;
+            }
+            for (int k = start; k < end; k++) {
+                char c = text.charAt(k);
+                if (!Character.isWhitespace(c)) {
+                    template.append(Character.toLowerCase(c));
+                }
+            }
+        }
+
+        // ---------------------------------------------------------------- 金额
+
+        private int scanPrefixedAmount(int start) {
+            int i = skipSpaces(start);
+            if (i < length && isArabicDigit(text.charAt(i)) && parseArabic(i)) {
+                addAmount(numberValue);
+                return numberEnd;
+            }
+            return start;
+        }
+
+        /**
+         * 数字之后根据单位判断是金额（元/块/毛）还是钟点（点/:），都不是则忽略
+         */
+        private int scanNumber(int start) {
+            boolean arabic = isArabicDigit(text.charAt(start));
+            if (!(arabic ? parseArabic(start) : parseChinese(start))) {
+                return start + 1;
+            }
+            long value = numberValue;
+            int i = skipSpaces(numberEnd);
+            if (i >= length) {
+                return i;
+            }
+
+            char unit = text.charAt(i);
+            if (unit == '元') {
+                addAmount(value);
+                return i + 1;
+            }
+            if (unit == '块') {
+                i++;
+                if (i < length && text.charAt(i) == '钱') {
+                    addAmount(value);
+                    return i + 1;
+                }
+                // 3块5 / 一块五：只有光秃的“块”后跟单个数字、且该数字后是结尾/标点/毛/角时才按角计，
+                // 避免 5块3个 被读成 5.30
+                if (!numberHasFraction && i < length && isJiaoDigit(i)) {
+                    value += digitValue(text.charAt(i)) * 10L;
+                    i++;
+                    if (i < length && (text.charAt(i) == '毛' || text.charAt(i) == '角')) {
+                        i++;
+                    }
+                    addAmount(value);
+                    return i;
+                }
+                // 一块蛋糕 中的“块”是量词：中文数字 + 块 只有在句末或前面有花/付等金额语境时才算金额
+                if (arabic || isBoundary(i) || hasMoneyContext(start)) {
+                    addAmount(value);
+                    return i;
+                }
+                return numberEnd;
+            }
+            if (unit == '毛' || unit == '角') {
+                addAmount(value / 10);
+                return i + 1;
+            }
+            if (arabic) {
+                int english = matchEnglishUnit(i);
+                if (english > i) {
+                    addAmount(value);
+                    return english;
+                }
+            }
+            // 中文数字 + 点 常见于“好一点”，只有前面出现过日期/时段或后接 钟/半 时才按钟点处理
+            boolean clockContext = arabic || date != null || period != PERIOD_NONE
+                || (unit == '点' && i + 1 < length && (text.charAt(i + 1) == '钟' || text.charAt(i + 1) == '半'));
+            if ((unit == '点' || unit == ':' || unit == '：') && clockContext
+                    && !numberHasFraction && value % 100 == 0 && value / 100 <= 24) {
+                return scanClock((int) (value / 100), i + 1, unit != '点');
+            }
+            return numberEnd;
+        }
+
+        private boolean isJiaoDigit(int i) {
+            if (digitValue(text.charAt(i)) < 0) {
+                return false;
+            }
+            int after = i + 1;
+            return isBoundary(after) || text.charAt(after) == '毛' || text.charAt(after) == '角';
+        }
+
+        /**
+         * 结尾、空白或标点；汉字和数字都不算边界
+         */
+        private boolean isBoundary(int i) {
+            return i >= length || !Character.isLetterOrDigit(text.charAt(i));
+        }
+
+        /**
+         * 数字前两三个字内出现 花/付/交/充/赚/价/费/钱 等金额语境
+         */
+        private boolean hasMoneyContext(int numberStart) {
+            for (int k = Math.max(0, numberStart - 3); k < numberStart; k++) {
+                switch (text.charAt(k)) {
+                    case '花', '付', '交', '充', '赚', '价', '费', '钱' -> {
+                        return true;
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void addAmount(long value) {
+            cents += value;
+            amountFound = true;
+            amountTokens++;
+        }
+
+        /**
+         * 解析阿拉伯数字（可带千分位逗号和小数点后两位），结果以分为单位
+         */
+        private boolean parseArabic(int start) {
+            long integer = 0;
+            int i = start;
+            int digits = 0;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (isArabicDigit(c)) {
+                    if (digits++ > 12) {
+                        return false;
+                    }
+                    integer = integer * 10 + (c - '0');
+                    i++;
+                } else if (c == ',' && digits > 0 && allArabicDigits(i + 1, i + 4)
+                        && (i + 4 >= length || !isArabicDigit(text.charAt(i + 4)))) {
+                    // 千分位：1,200
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            long fraction = 0;
+            numberHasFraction = false;
+            if (i + 1 < length && text.charAt(i) == '.' && isArabicDigit(text.charAt(i + 1))) {
+                numberHasFraction = true;
+                i++;
+                int scale = 0;
+                while (i < length && isArabicDigit(text.charAt(i))) {
+                    if (scale < 2) {
+                        fraction = fraction * 10 + (text.charAt(i) - '0');
+                        scale++;
+                    }
+                    i++;
+                }
+                if (scale == 1) {
+                    fraction *= 10;
+                }
+            }
+            numberValue = integer * 100 + fraction;
+            numberEnd = i;
+            return true;
+        }
+
+        /**
+         * 解析中文数字：两百五、一千二百零五、三万五千、十二，结果以分为单位
+         */
+        private boolean parseChinese(int start) {
+            long total = 0;
+            long section = 0;
+            int digit = -1;
+            int lastUnit = 1;
+            boolean afterZero = false;
+            int i = start;
+            while (i < length) {
+                char c = text.charAt(i);
+                int d = chineseDigit(c);
+                if (d >= 0) {
+                    afterZero |= d == 0;
+                    digit = d;
+                } else if (c == '十' || c == '百' || c == '千') {
+                    int unit = c == '十' ? 10 : c == '百' ? 100 : 1000;
+                    section += (digit < 0 ? 1 : digit) * (long) unit;
+                    digit = -1;
+                    lastUnit = unit;
+                    afterZero = false;
+                } else if (c == '万') {
+                    total += (section + Math.max(digit, 0)) * 10_000L;
+                    section = 0;
+                    digit = -1;
+                    lastUnit = 10_000;
+                    afterZero = false;
+                } else {
+                    break;
+                }
+                i++;
+            }
+            if (i == start) {
+                return false;
+            }
+            long tail = Math.max(digit, 0);
+            // 口语省略末位单位：两百五 = 250，三万五 = 35000
+            if (digit > 0 && !afterZero && lastUnit >= 100 && i - start > 1) {
+                tail = digit * (long) (lastUnit / 10);
+            }
+            numberValue = (total + section + tail) * 100;
+            numberEnd = i;
+            numberHasFraction = false;
+            return true;
+        }
+
+        private int matchEnglishUnit(int start) {
+            for (String unit : ENGLISH_UNITS) {
+                if (text.regionMatches(true, start, unit, 0, unit.length())
+                        && (start + unit.length() >= length || !Character.isLetter(text.charAt(start + unit.length())))) {
+                    return start + unit.length();
+                }
+            }
+            return start;
+        }
+
+        // ---------------------------------------------------------------- 时间
+
+        private int scanTimeWord(int i) {
+            char c = text.charAt(i);
+            char n = i + 1 < length ? text.charAt(i + 1) : 0;
+            LocalDate today = now.toLocalDate();
+            switch (c) {
+                case '今':
+                    if (n == '天' || n == '日') return day(today, i + 2);
+                    if (n == '早') return dayAndPeriod(today, PERIOD_MORNING, i + 2);
+                    if (n == '晚') return dayAndPeriod(today, PERIOD_EVENING, i + 2);
+                    break;
+                case '昨':
+                    if (n == '天' || n == '日') return day(today.minusDays(1), i + 2);
+                    if (n == '早') return dayAndPeriod(today.minusDays(1), PERIOD_MORNING, i + 2);
+                    if (n == '晚' || n == '夜') return dayAndPeriod(today.minusDays(1), PERIOD_EVENING, i + 2);
+                    break;
+                case '前':
+                    if (n == '天') return day(today.minusDays(2), i + 2);
+                    break;
+                case '大':
+                    if (text.startsWith("大前天", i)) return day(today.minusDays(3), i + 3);
+                    break;
+                case '明':
+                    if (n == '天' || n == '日') return day(today.plusDays(1), i + 2);
+                    if (n == '早') return dayAndPeriod(today.plusDays(1), PERIOD_MORNING, i + 2);
+                    if (n == '晚') return dayAndPeriod(today.plusDays(1), PERIOD_EVENING, i + 2);
+                    break;
+                case '上':
+                    if (n == '午') return period(PERIOD_FORENOON, i + 2);
+                    return weekday(i + 1, -1, i);
+                case '这':
+                case '本':
+                    return weekday(i + 1, 0, i);
+                case '周':
+                case '星':
+                case '礼':
+                    return weekday(i, 0, i);
+                case '凌':
+                    if (n == '晨') return period(PERIOD_DAWN, i + 2);
+                    break;
+                case '早':
+                    if (n == '上' || n == '晨') return period(PERIOD_MORNING, i + 2);
+                    break;
+                case '中':
+                    if (n == '午') return period(PERIOD_NOON, i + 2);
+                    break;
+                case '下':
+                    if (n == '午') return period(PERIOD_AFTERNOON, i + 2);
+                    break;
+                case '傍':
+                    if (n == '晚') return period(PERIOD_EVENING, i + 2);
+                    break;
+                case '晚':
+                    if (n == '上') return period(PERIOD_EVENING, i + 2);
+                    break;
+                case 'y':
+                case 'Y':
+                    if (text.regionMatches(true, i, "yesterday", 0, 9)) return day(today.minusDays(1), i + 9);
+                    break;
+                case 't':
+                case 'T':
+                    if (text.regionMatches(true, i, "today", 0, 5)) return day(today, i + 5);
+                    break;
+                default:
+                    break;
+            }
+            return i + 1;
+        }
+
+        /**
+         * 周X / 星期X / 礼拜X，可带 上/这/本 前缀（weekOffset 为 -1 或 0）
+         */
+        private int weekday(int i, int weekOffset, int start) {
+            int dayIndex;
+            if (text.startsWith("周", i)) {
+                dayIndex = i + 1;
+            } else if (text.startsWith("星期", i) || text.startsWith("礼拜", i)) {
+                dayIndex = i + 2;
+            } else {
+                return start + 1;
+            }
+            if (dayIndex >= length) {
+                return start + 1;
+            }
+            int dow = weekdayValue(text.charAt(dayIndex));
+            if (dow < 0) {
+                return start + 1;
+            }
+            LocalDate monday = now.toLocalDate().with(DayOfWeek.MONDAY).plusWeeks(weekOffset);
+            return day(monday.plusDays(dow - 1), dayIndex + 1);
+        }
+
+        private int day(LocalDate value, int end) {
+            date = value;
+            dateTokens++;
+            datePeriod = PERIOD_NONE;
+            return end;
+        }
+
+        private int dayAndPeriod(LocalDate value, int periodValue, int end) {
+            date = value;
+            period = periodValue;
+            dateTokens++;
+            datePeriod = periodValue;
+            return end;
+        }
+
+        private int period(int periodValue, int end) {
+            period = periodValue;
+            return end;
+        }
+
+        /**
+         * N点 之后的 半 / 一刻 / M分，colon 为 true 时按 HH:mm 解析
+         */
+        private int scanClock(int h, int i, boolean colon) {
+            hour = h;
+            minute = 0;
+            if (i >= length) {
+                return i;
+            }
+            char c = text.charAt(i);
+            if (!colon && c == '半') {
+                minute = 30;
+                return i + 1;
+            }
+            if (!colon && text.startsWith("一刻", i)) {
+                minute = 15;
+                return i + 2;
+            }
+            if (!colon && c == '钟') {
+                return i + 1;
+            }
+            if (isArabicDigit(c) || (!colon && isChineseNumeral(c))) {
+                boolean ok = isArabicDigit(c) ? parseArabic(i) : parseChinese(i);
+                if (ok && !numberHasFraction && numberValue / 100 < 60) {
+                    minute = (int) (numberValue / 100);
+                    int end = numberEnd;
+                    if (end < length && text.charAt(end) == '分') {
+                        end++;
+                    }
+                    return end;
+                }
+            }
+            return i;
+        }
+
+        private LocalDateTime resolveTime() {
+            if (date == null && hour < 0 && period == PERIOD_NONE) {
+                return null;
+            }
+            LocalDate day = date != null ? date : now.toLocalDate();
+            if (hour < 0) {
+                if (period == PERIOD_NONE) {
+                    // 只有日期：沿用当前时刻
+                    return LocalDateTime.of(day, now.toLocalTime().withNano(0));
+                }
+                return LocalDateTime.of(day, LocalTime.of(PERIOD_DEFAULT_HOUR[period], 0));
+            }
+            int h = hour;
+            if ((period == PERIOD_AFTERNOON || period == PERIOD_EVENING) && h < 12) {
+                h += 12;
+            } else if (period == PERIOD_NOON && h < 11) {
+                h += 12;
+            } else if (period == PERIOD_DAWN && h == 12) {
+                h = 0;
+            }
+            if (h == 24) {
+                h = 0;
+                day = day.plusDays(1);
+            }
+            return LocalDateTime.of(day, LocalTime.of(h, minute));
+        }
+
+        // ---------------------------------------------------------------- 字符
+
+        private int skipSpaces(int i) {
+            while (i < length && text.charAt(i) == ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        private boolean allArabicDigits(int from, int to) {
+            if (to > length) {
+                return false;
+            }
+            for (int k = from; k < to; k++) {
+                if (!isArabicDigit(text.charAt(k))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean isArabicDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isChineseNumeral(char c) {
+        return chineseDigit(c) >= 0 || c == '十' || c == '百' || c == '千' || c == '万';
+    }
+
+    private static int chineseDigit(char c) {
+        return switch (c) {
+            case '零', '〇' -> 0;
+            case '一' -> 1;
+            case '二', '两' -> 2;
+            case '三' -> 3;
+            case '四' -> 4;
+            case '五' -> 5;
+            case '六' -> 6;
+            case '七' -> 7;
+            case '八' -> 8;
+            case '九' -> 9;
+            default -> -1;
+        };
+    }
+
+    /**
+     * 单个阿拉伯或中文数字的值，其他字符返回 -1
+     */
+    private static int digitValue(char c) {
+        return isArabicDigit(c) ? c - '0' : chineseDigit(c);
+    }
+
+    private static int weekdayValue(char c) {
+        return switch (c) {
+            case '一', '1' -> 1;
+            case '二', '2' -> 2;
+            case '三', '3' -> 3;
+            case '四', '4' -> 4;
+            case '五', '5' -> 5;
+            case '六', '6' -> 6;
+            case '日', '天', '七', '7' -> 7;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,163 @@
+package com.lifeos.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多项式朴素贝叶斯分类器，特征为整数编号（如字符 n-gram 的编码），只保存计数，
+ * 因此可以逐条增量训练。非线程安全：训练在副本上进行（copy()），预测方只读已发布的实例
+ */
+public final class NaiveBayes {
+
+    private final List<String> labels = new ArrayList<>();
+    private final Map<String, Integer> labelIndex = new HashMap<>();
+    // 特征 -> 各类别下的出现次数
+    private final Map<Integer, int[]> featureCounts = new HashMap<>();
+    private int[] docCounts = new int[0];
+    private long[] totalCounts = new long[0];
+    private int totalDocs;
+
+    public NaiveBayes copy() {
+        NaiveBayes copy = new NaiveBayes();
+        copy.labels.addAll(labels);
+        copy.labelIndex.putAll(labelIndex);
+        featureCounts.forEach((feature, counts) -> copy.featureCounts.put(feature, counts.clone()));
+        copy.docCounts = docCounts.clone();
+        copy.totalCounts = totalCounts.clone();
+        copy.totalDocs = totalDocs;
+        return copy;
+    }
+
+    public int totalDocs() {
+        return totalDocs;
+    }
+
+    public int docCount(String label) {
+        Integer index = labelIndex.get(label);
+        return index != null ? docCounts[index] : 0;
+    }
+
+    /**
+     * 以 label 为类别加入一条样本，features 中重复的特征按出现次数计
+     */
+    public void add(int[] features, String label) {
+        int c = labelIndex.computeIfAbsent(label, l -> {
+            labels.add(l);
+            docCounts = Arrays.copyOf(docCounts, labels.size());
+            totalCounts = Arrays.copyOf(totalCounts, labels.size());
+            return labels.size() - 1;
+        });
+        for (int feature : features) {
+            int[] counts = featureCounts.get(feature);
+            if (counts == null) {
+                counts = new int[labels.size()];
+                featureCounts.put(feature, counts);
+            } else if (counts.length <= c) {
+                counts = Arrays.copyOf(counts, labels.size());
+                featureCounts.put(feature, counts);
+            }
+            counts[c]++;
+        }
+        docCounts[c]++;
+        totalCounts[c] += features.length;
+        totalDocs++;
+    }
+
+    /**
+     * 各类别的后验概率（拉普拉斯平滑），按类别加入顺序排列，与 labels() 对应；没有训练数据时返回空数组
+     */
+    public double[] posterior(int[] features) {
+        int classes = labels.size();
+        if (classes == 0) {
+            return new double[0];
+        }
+        double vocabulary = Math.max(1, featureCounts.size());
+        double[] scores = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            scores[c] = Math.log((docCounts[c] + 1.0) / (totalDocs + classes));
+        }
+        for (int feature : features) {
+            int[] counts = featureCounts.get(feature);
+            if (counts == null) {
+                // 未见过的特征对所有类别的影响只差在分母上
+                for (int c = 0; c < classes; c++) {
+                    scores[c] -= Math.log(totalCounts[c] + vocabulary);
+                }
+                continue;
+            }
+            for (int c = 0; c < classes; c++) {
+                int count = c < counts.length ? counts[c] : 0;
+                scores[c] += Math.log((count + 1.0) / (totalCounts[c] + vocabulary));
+            }
+        }
+
+        // softmax
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        for (int c = 0; c < classes; c++) {
+            scores[c] = Math.exp(scores[c] - max);
+            sum += scores[c];
+        }
+        for (int c = 0; c < classes; c++) {
+            scores[c] /= sum;
+        }
+        return scores;
+    }
+
+    public List<String> labels() {
+        return labels;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(labels.size());
+        for (int c = 0; c < labels.size(); c++) {
+            out.writeUTF(labels.get(c));
+            out.writeInt(docCounts[c]);
+            out.writeLong(totalCounts[c]);
+        }
+        out.writeInt(totalDocs);
+        out.writeInt(featureCounts.size());
+        for (Map.Entry<Integer, int[]> entry : featureCounts.entrySet()) {
+            out.writeInt(entry.getKey());
+            int[] counts = entry.getValue();
+            out.writeInt(counts.length);
+            for (int count : counts) {
+                out.writeInt(count);
+            }
+        }
+    }
+
+    public static NaiveBayes read(DataInputStream in) throws IOException {
+        NaiveBayes model = new NaiveBayes();
+        int classes = in.readInt();
+        model.docCounts = new int[classes];
+        model.totalCounts = new long[classes];
+        for (int c = 0; c < classes; c++) {
+            String label = in.readUTF();
+            model.labels.add(label);
+            model.labelIndex.put(label, c);
+            model.docCounts[c] = in.readInt();
+            model.totalCounts[c] = in.readLong();
+        }
+        model.totalDocs = in.readInt();
+        int features = in.readInt();
+        for (int i = 0; i < features; i++) {
+            int feature = in.readInt();
+            int[] counts = new int[in.readInt()];
+            for (int c = 0; c < counts.length; c++) {
+                counts[c] = in.readInt();
+            }
+            model.featureCounts.put(feature, counts);
+        }
+        return model;
+    }
+}
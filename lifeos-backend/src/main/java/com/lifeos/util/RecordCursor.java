@@ -0,0 +1,53 @@
+package com.lifeos.util;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * 记录列表的分页游标：把上一页最后一条记录的 (record_time, id) 编码为不透明字符串，客户端原样传回。
+ * record_time 为秒精度（DATETIME），按 UTC 偏移换算只是编码方式，不涉及时区
+ */
+public final class RecordCursor {
+
+    private static final int LENGTH = 16;
+
+    private RecordCursor() {}
+
+    /**
+     * 游标指向的位置，下一页从严格早于该位置的记录开始
+     */
+    public record Position(LocalDateTime recordTime, long id) {}
+
+    public static String encode(LocalDateTime recordTime, long id) {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.putLong(recordTime.toEpochSecond(ZoneOffset.UTC)).putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * 解析游标，格式不正确时抛出 IllegalArgumentException
+     */
+    public static Position decode(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            bytes = null;
+        }
+        if (bytes == null || bytes.length != LENGTH) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        LocalDateTime recordTime;
+        try {
+            recordTime = LocalDateTime.ofEpochSecond(buffer.getLong(), 0, ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            // 篡改过的游标：秒数超出 LocalDateTime 范围
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        return new Position(recordTime, buffer.getLong());
+    }
+}
@@ -0,0 +1,129 @@
+package com.lifeos.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.lifeos.dto.AiParseResult;
+import com.lifeos.entity.LifeRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值编解码：原先的 JSON 字符串与现在 CacheService 使用的 Smile 对比，
+ * 分别测解析结果（AiParseResult）和一页记录（50 条 LifeRecord）。每条缓存的字节数在启动时打印。
+ * ObjectMapper 按 Spring Boot 的默认配置构建，Smile 与 CacheService 一样由它 copyWith 得到。运行方式：
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main CacheSerdeBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheSerdeBenchmark {
+
+    private static final TypeReference<List<LifeRecord>> RECORD_LIST = new TypeReference<>() {};
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"parse", "records"})
+    private String payload;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper smileMapper;
+    private Object value;
+    private String json;
+    private byte[] smile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        smileMapper = jsonMapper.copyWith(new SmileFactory());
+        value = "parse".equals(payload) ? parseResult() : recordPage();
+        json = jsonMapper.writeValueAsString(value);
+        smile = smileMapper.writeValueAsBytes(value);
+        System.out.printf("%n[%s] bytes per entry: json=%d smile=%d (%.0f%%)%n", payload,
+            json.getBytes(StandardCharsets.UTF_8).length, smile.length,
+            100.0 * smile.length / json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Benchmark
+    public String encodeJson() throws Exception {
+        return jsonMapper.writeValueAsString(value);
+    }
+
+    @Benchmark
+    public byte[] encodeSmile() throws Exception {
+        return smileMapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decodeJson() throws Exception {
+        return "parse".equals(payload)
+            ? jsonMapper.readValue(json, AiParseResult.class)
+            : jsonMapper.readValue(json, RECORD_LIST);
+    }
+
+    @Benchmark
+    public Object decodeSmile() throws Exception {
+        return "parse".equals(payload)
+            ? smileMapper.readValue(smile, AiParseResult.class)
+            : smileMapper.readValue(smile, RECORD_LIST);
+    }
+
+    private static AiParseResult parseResult() {
+        AiParseResult result = AiParseResult.of(List.of("expense", "mood"), new BigDecimal("30.00"),
+            List.of("餐饮", "午餐"), 4, "2026-10-18 12:30:00", "消费 ¥30.00 | 情绪记录");
+        result.setConfidence(0.92);
+        result.setSource(LifeRecord.PARSE_SOURCE_LLM);
+        return result;
+    }
+
+    private static List<LifeRecord> recordPage() {
+        String[] contents = {
+            "午饭花了30元，和同事聚餐，不错",
+            "打车去会议，有点紧张",
+            "淘宝买了衣服和鞋，超市买了零食",
+            "周末在家看书，整理了房间，心情很平静",
+        };
+        LocalDateTime time = LocalDateTime.of(2026, 10, 18, 12, 0);
+        List<LifeRecord> records = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            LifeRecord record = new LifeRecord();
+            record.setId(10_000L + i);
+            record.setUserId(1L);
+            record.setContent(contents[i % contents.length]);
+            record.setRecordType(i % 2 == 0 ? "expense" : "mood");
+            record.setAmount(i % 2 == 0 ? new BigDecimal(20 + i) : null);
+            record.setTags("[\"餐饮\",\"午餐\"]");
+            record.setEmotionScore(i % 7 - 3);
+            record.setParseStatus(LifeRecord.PARSE_STATUS_DONE);
+            record.setParseSource(LifeRecord.PARSE_SOURCE_LLM);
+            record.setRecordTime(time.minusHours(i));
+            record.setCreatedAt(time.minusHours(i));
+            record.setUpdatedAt(time.minusHours(i));
+            records.add(record);
+        }
+        return records;
+    }
+}
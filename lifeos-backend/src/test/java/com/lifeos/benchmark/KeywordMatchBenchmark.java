@@ -0,0 +1,154 @@
+package com.lifeos.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeos.service.LocalKeywordEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地规则关键词匹配吞吐：Aho-Corasick 自动机（LocalKeywordEngine）与原先逐个关键词 String.contains 的实现对比。
+ * 两者使用同一份 local-rules.json；contains 版本与原 LlmRoutingService 一样每次调用重建关键词数组，
+ * 类型、标签、情绪各扫描一遍文本。运行方式：
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main KeywordMatchBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordMatchBenchmark {
+
+    private static final String[] SHORT_TEXTS = {
+        "午饭花了30元",
+        "打车去会议，有点紧张",
+        "今天很开心",
+        "Had a great lunch, paid 25 yuan",
+        "淘宝买了衣服和鞋",
+        "加班到十点，好烦",
+        "rent and utilities paid",
+        "周末在家看书",
+    };
+
+    private static final String LONG_TEXT =
+        "今天早上出门有点晚，打车去公司花了35元，路上一直在想下午的项目会议，心里有点焦虑。" +
+        "中午和同事在楼下餐厅吃饭，点了火锅，人均80块，聊了很多关于新客户的事情，感觉还不错。" +
+        "下午开会的时候老板对方案比较满意，紧张的心情终于放松了下来。下班后去超市买了些零食和饮料，" +
+        "又在淘宝上给家里买了一个新的电饭煲，晚上看了一部电影，整体来说是开心的一天。" +
+        "Also paid the phone bill and booked a business trip for next week, hope the weather is great.";
+
+    @Param({"short", "long"})
+    private String length;
+
+    private String[] texts;
+    private LocalKeywordEngine engine;
+    private JsonNode rules;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        texts = "short".equals(length) ? SHORT_TEXTS : new String[]{LONG_TEXT};
+        engine = new LocalKeywordEngine();
+        ReflectionTestUtils.setField(engine, "location", new ClassPathResource("local-rules.json"));
+        engine.init();
+        try (InputStream in = new ClassPathResource("local-rules.json").getInputStream()) {
+            rules = new ObjectMapper().readTree(in);
+        }
+    }
+
+    private String nextText() {
+        String text = texts[next];
+        next = (next + 1) % texts.length;
+        return text;
+    }
+
+    @Benchmark
+    public void automaton(Blackhole bh) {
+        LocalKeywordEngine.Match match = engine.match(nextText());
+        bh.consume(match.recordTypes());
+        bh.consume(match.tags());
+        bh.consume(match.emotionScore());
+    }
+
+    @Benchmark
+    public void contains(Blackhole bh) {
+        String text = nextText();
+        bh.consume(containsTypes(text));
+        bh.consume(containsTags(text));
+        bh.consume(containsEmotion(text));
+    }
+
+    private List<String> containsTypes(String text) {
+        String lower = text.toLowerCase();
+        List<String> types = new ArrayList<>();
+        for (JsonNode group : rules.path("types")) {
+            if (countKeywords(lower, keywords(group.path("keywords"))) > 0) {
+                types.add(group.path("name").asText());
+            }
+        }
+        return types;
+    }
+
+    private List<String> containsTags(String text) {
+        String lower = text.toLowerCase();
+        List<String> tags = new ArrayList<>();
+        for (JsonNode group : rules.path("tags")) {
+            for (String keyword : keywords(group.path("keywords"))) {
+                if (lower.contains(keyword)) {
+                    tags.add(group.path("name").asText());
+                    break;
+                }
+            }
+        }
+        return tags;
+    }
+
+    private int containsEmotion(String text) {
+        String lower = text.toLowerCase();
+        JsonNode emotion = rules.path("emotion");
+        int weight = emotion.path("weight").asInt(2);
+        int score = weight * countKeywords(lower, keywords(emotion.path("positive")))
+            - weight * countKeywords(lower, keywords(emotion.path("negative")));
+        return Math.max(-10, Math.min(10, score));
+    }
+
+    private static String[] keywords(JsonNode array) {
+        String[] keywords = new String[array.size()];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = array.get(i).asText().toLowerCase();
+        }
+        return keywords;
+    }
+
+    private static int countKeywords(String text, String[] keywords) {
+        int count = 0;
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,87 @@
+package com.lifeos.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis 不可用期间的本地递增按次数补发，恢复后版本号不回退
+ */
+class DataVersionServiceTest {
+
+    private static final String KEY = "lifeos:data-version:7";
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> ops;
+    private CacheService cacheService;
+    private DataVersionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        cacheService = mock(CacheService.class);
+        ObjectProvider<CacheService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(cacheService);
+
+        service = new DataVersionService(redisTemplate, mock(RedisMessageListenerContainer.class), provider);
+        ReflectionTestUtils.setField(service, "localTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "localMaxSize", 100L);
+        service.init();
+    }
+
+    @Test
+    void bumpsWhileRedisIsDownAreFlushedAsOneDelta() {
+        when(ops.get(KEY)).thenReturn("5");
+        when(cacheService.isRedisAvailable()).thenReturn(false);
+        assertEquals(5, service.currentVersion(7L));
+
+        service.bump(7L);
+        service.bump(7L);
+        service.bump(7L);
+        assertEquals(8, service.currentVersion(7L));
+        verify(ops, never()).increment(anyString());
+
+        when(cacheService.isRedisAvailable()).thenReturn(true);
+        when(ops.increment(KEY, 3L)).thenReturn(8L);
+        service.flushPendingBumps();
+        verify(ops).increment(KEY, 3L);
+        verify(redisTemplate).convertAndSend("lifeos:data-version:changed", "7:8");
+
+        // 已补发，下一次递增直接走 Redis
+        when(ops.increment(KEY)).thenReturn(9L);
+        service.bump(7L);
+        assertEquals(9, service.currentVersion(7L));
+    }
+
+    @Test
+    void failedFlushKeepsThePendingCount() {
+        when(cacheService.isRedisAvailable()).thenReturn(false);
+        service.bump(7L);
+        service.bump(7L);
+
+        when(cacheService.isRedisAvailable()).thenReturn(true);
+        when(ops.increment(KEY, 2L)).thenThrow(new RuntimeException("connection refused"));
+        service.flushPendingBumps();
+
+        service.bump(7L);
+        when(ops.increment(KEY, 3L)).thenReturn(3L);
+        service.flushPendingBumps();
+        verify(ops).increment(KEY, 3L);
+    }
+}
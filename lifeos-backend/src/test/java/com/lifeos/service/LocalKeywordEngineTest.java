@@ -0,0 +1,139 @@
+package com.lifeos.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 自动机匹配结果与原先逐个 String.contains 的规则逐条比对
+ */
+class LocalKeywordEngineTest {
+
+    private static final String[] SENTENCES = {
+        "",
+        "今天花了30元吃饭，很开心",
+        "打车去会议，有点紧张",
+        "Had a GREAT lunch at the restaurant, paid 25 yuan",
+        "business trip to Shanghai, took the high-speed rail, so tired and anxious",
+        "uncomfortable meeting with the boss, then milk tea and ice cream",
+        "happy happy happy joyful excited satisfied comfortable relaxed lucky wonderful",
+        "sad upset depressed disappointed angry anxious nervous uncomfortable painful terrible",
+        "Taobao shopping: new clothes, shoes and a bag",
+        "周末和朋友聚会看movie，买了爆米花",
+        "rent, utilities and phone bill paid",
+        "nothing to see here",
+        "午饭花了30元，和同事聚餐，不错",
+        "加班到十点，打车回家，好烦",
+        "淘宝买了衣服和鞋，超市买了零食",
+    };
+
+    private LocalKeywordEngine engine;
+    private JsonNode rules;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new LocalKeywordEngine();
+        ReflectionTestUtils.setField(engine, "location", new ClassPathResource("local-rules.json"));
+        engine.init();
+        try (InputStream in = new ClassPathResource("local-rules.json").getInputStream()) {
+            rules = new ObjectMapper().readTree(in);
+        }
+    }
+
+    @Test
+    void matchesContainsRulesOnSampleSentences() {
+        for (String text : SENTENCES) {
+            assertSameAsContains(text);
+        }
+    }
+
+    @Test
+    void matchesContainsRulesOnRandomKeywordMixes() {
+        List<String> keywords = allKeywords();
+        String[] fillers = {" ", "，", "a", "的", "x", "tea", "me", "了", "。"};
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder text = new StringBuilder();
+            int parts = random.nextInt(8);
+            for (int p = 0; p < parts; p++) {
+                String part = random.nextBoolean()
+                    ? keywords.get(random.nextInt(keywords.size()))
+                    : fillers[random.nextInt(fillers.length)];
+                // 随机截断或改大小写，覆盖部分匹配和重叠匹配
+                if (random.nextInt(4) == 0 && part.length() > 1) {
+                    part = part.substring(0, 1 + random.nextInt(part.length() - 1));
+                }
+                text.append(random.nextBoolean() ? part.toUpperCase() : part);
+            }
+            assertSameAsContains(text.toString());
+        }
+    }
+
+    @Test
+    void chineseTextGetsPromptTags() {
+        // 标签名与 LLM 提示词中的标签一致
+        LocalKeywordEngine.Match match = engine.match("午饭花了30元，然后打车去开会");
+        assertEquals(List.of("expense", "event"), match.recordTypes());
+        assertEquals(List.of("餐饮", "午餐", "交通", "打车", "工作"), match.tags());
+    }
+
+    private void assertSameAsContains(String text) {
+        LocalKeywordEngine.Match match = engine.match(text);
+        String lower = text.toLowerCase();
+        assertEquals(containsNames(lower, rules.path("types")), match.recordTypes(), "types: " + text);
+        assertEquals(containsNames(lower, rules.path("tags")), match.tags(), "tags: " + text);
+        assertEquals(containsEmotion(lower), match.emotionScore(), "emotion: " + text);
+    }
+
+    private static List<String> containsNames(String lower, JsonNode groups) {
+        List<String> names = new ArrayList<>();
+        for (JsonNode group : groups) {
+            for (JsonNode keyword : group.path("keywords")) {
+                if (lower.contains(keyword.asText().toLowerCase())) {
+                    names.add(group.path("name").asText());
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    private int containsEmotion(String lower) {
+        JsonNode emotion = rules.path("emotion");
+        int weight = emotion.path("weight").asInt(2);
+        int score = 0;
+        for (JsonNode keyword : emotion.path("positive")) {
+            if (lower.contains(keyword.asText().toLowerCase())) {
+                score += weight;
+            }
+        }
+        for (JsonNode keyword : emotion.path("negative")) {
+            if (lower.contains(keyword.asText().toLowerCase())) {
+                score -= weight;
+            }
+        }
+        return Math.max(-10, Math.min(10, score));
+    }
+
+    private List<String> allKeywords() {
+        List<String> keywords = new ArrayList<>();
+        for (String section : new String[]{"types", "tags"}) {
+            for (JsonNode group : rules.path(section)) {
+                group.path("keywords").forEach(k -> keywords.add(k.asText()));
+            }
+        }
+        rules.path("emotion").path("positive").forEach(k -> keywords.add(k.asText()));
+        rules.path("emotion").path("negative").forEach(k -> keywords.add(k.asText()));
+        return keywords;
+    }
+}
@@ -0,0 +1,72 @@
+package com.lifeos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocalTextScannerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 14, 9, 30);
+
+    private static BigDecimal amount(String text) {
+        return LocalTextScanner.scan(text, NOW).amount();
+    }
+
+    @Test
+    void digitAfterYuanOrKuaiQianIsNotJiao() {
+        assertEquals(new BigDecimal("30.00"), amount("30元2份"));
+        assertEquals(new BigDecimal("30.00"), amount("三十元一份"));
+        assertEquals(new BigDecimal("5.00"), amount("5块钱3个"));
+        assertEquals(new BigDecimal("5.00"), amount("5块3个"));
+    }
+
+    @Test
+    void digitAfterBareKuaiIsJiaoAtBoundary() {
+        assertEquals(new BigDecimal("3.50"), amount("3块5"));
+        assertEquals(new BigDecimal("1.50"), amount("一块五"));
+        assertEquals(new BigDecimal("3.50"), amount("奶茶3块5，还行"));
+        assertEquals(new BigDecimal("2.80"), amount("两块八毛"));
+    }
+
+    @Test
+    void kuaiAsMeasureWordIsNotMoney() {
+        assertEquals(new BigDecimal("20.00"), amount("一块蛋糕花了20元"));
+        assertNull(amount("吃了两块饼干"));
+    }
+
+    @Test
+    void chineseKuaiWithMoneyContext() {
+        assertEquals(new BigDecimal("30.00"), amount("花了三十块"));
+        assertEquals(new BigDecimal("30.00"), amount("花了三十块买菜"));
+        assertEquals(new BigDecimal("10.00"), amount("打车十块钱"));
+    }
+
+    @Test
+    void formatsCoveredByOldRegex() {
+        assertEquals(new BigDecimal("25.00"), amount("午饭花了25元"));
+        assertEquals(new BigDecimal("12.50"), amount("咖啡12.5元"));
+        assertEquals(new BigDecimal("30.00"), amount("30块钱"));
+        assertEquals(new BigDecimal("25.00"), amount("lunch 25 yuan"));
+        assertEquals(new BigDecimal("12.50"), amount("coffee 12.5 dollars"));
+        assertEquals(new BigDecimal("3.00"), amount("3 rmb"));
+        assertEquals(new BigDecimal("10.00"), amount("10 bucks"));
+    }
+
+    @Test
+    void prefixesAndSums() {
+        assertEquals(new BigDecimal("12.50"), amount("¥12.5"));
+        assertEquals(new BigDecimal("1200.00"), amount("房租￥1,200"));
+        assertEquals(new BigDecimal("35.00"), amount("早餐5元午饭30元"));
+        assertEquals(new BigDecimal("0.50"), amount("5毛"));
+    }
+
+    @Test
+    void textWithoutAmount() {
+        assertNull(amount("今天心情好一点"));
+        assertNull(amount("跑步3公里"));
+    }
+}
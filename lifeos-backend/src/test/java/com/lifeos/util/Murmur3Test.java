@@ -0,0 +1,102 @@
+package com.lifeos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Murmur3Test {
+
+    private static final String FOX = "The quick brown fox jumps over the lazy dog";
+
+    /**
+     * FOX 前 n 个字节（seed 0）的 {h1, h2}：覆盖空输入、尾部 1-15 字节、整块 16/32 字节及跨块尾部。
+     * 与下面的 SMHasher 校验值和 Guava 参考向量同时通过时记录
+     */
+    private static final long[][] PREFIX_VECTORS = {
+        {0, 0x0000000000000000L, 0x0000000000000000L},
+        {1, 0x8c03777e9184689aL, 0x3ab5d6b4ba293e79L},
+        {2, 0xd7dd0beaee68e3b9L, 0xa56fb69099026b97L},
+        {3, 0x304f2652dcd66d9aL, 0xef385e5d15eabf42L},
+        {4, 0xbd4301beaba07d9cL, 0xdfae3c4b8026dd1cL},
+        {5, 0x6f7aac75205270feL, 0x76f5ebd390dac61fL},
+        {6, 0x796e1100f3f66746L, 0xb2a07e0b1665ab1fL},
+        {7, 0xf0d3843a5abcd5c9L, 0x9394b7f9c86d6073L},
+        {8, 0x644baae4ad5b71cdL, 0x8eeef997e2881cdfL},
+        {9, 0x37a06404b2a8f155L, 0xadbcc8ff3d6eccc0L},
+        {10, 0x420e44df457484b8L, 0x9cabadd477515fe9L},
+        {11, 0x87c320550739a882L, 0xfa91e8a5d66e7b9fL},
+        {12, 0x61d6a1372f90f9cbL, 0xb66353ea7c002529L},
+        {13, 0x3c600c93f99bfd3bL, 0xc3e13319056f26f4L},
+        {14, 0xdcd216a95d6e6007L, 0x84c1eeb85c46c838L},
+        {15, 0x48137cb864e39216L, 0xfd7baf64397ad64bL},
+        {16, 0x9d1244f4af9b32c4L, 0x3d153c8b2c2a3aa6L},
+        {17, 0x91f96376e757e9aeL, 0x9b44e58dae83eb0cL},
+        {31, 0x9b28b5ddd9c4c509L, 0x0d3c1cb80fe2f964L},
+        {32, 0xdf6af91bb29bdacfL, 0x91a341c58df1f3a6L},
+        {33, 0x68d135cdab7bb3ddL, 0xe617f8470728bb01L}
+    };
+
+    /**
+     * SMHasher 的 MurmurHash3_x64_128 校验值：对长度 0-255 的输入 {0, 1, ..., n-1}（seed = 256 - n）分别求哈希，
+     * 拼接后以 seed 0 再求一次，取前 4 字节（小端）
+     */
+    @Test
+    void matchesSmhasherVerificationValue() {
+        byte[] key = new byte[256];
+        byte[] hashes = new byte[256 * 16];
+        for (int i = 0; i < 256; i++) {
+            key[i] = (byte) i;
+            long[] hash = Murmur3.hash128(Arrays.copyOf(key, i), 256 - i);
+            ByteBuffer.wrap(hashes, i * 16, 16).order(ByteOrder.LITTLE_ENDIAN).putLong(hash[0]).putLong(hash[1]);
+        }
+        long[] verification = Murmur3.hash128(hashes, 0);
+        assertEquals(0x6384BA69, (int) verification[0]);
+    }
+
+    /**
+     * Guava Murmur3Hash128Test 中的参考向量（Hashing.murmur3_128(seed)）
+     */
+    @Test
+    void matchesGuavaMurmur3_128() {
+        assertHash(0, 0x629942693e10f867L, 0x92db0b82baeb5347L, "hell");
+        assertHash(1, 0xa78ddff5adae8d10L, 0x128900ef20900135L, "hello");
+        assertHash(2, 0x8a486b23f422e826L, 0xf962a2c58947765fL, "hello ");
+        assertHash(3, 0x2ea59f466f6bed8cL, 0xc610990acc428a17L, "hello w");
+        assertHash(4, 0x79f6305a386c572cL, 0x46305aed3483b94eL, "hello wo");
+        assertHash(5, 0xc2219d213ec1f1b5L, 0xa1d8e2e0a52785bdL, "hello wor");
+        assertHash(0, 0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L, FOX);
+        assertHash(0, 0x658ca970ff85269aL, 0x43fee3eaa68e5c3eL, "The quick brown fox jumps over the lazy cog");
+    }
+
+    @Test
+    void coversEveryTailLength() {
+        for (long[] vector : PREFIX_VECTORS) {
+            int length = (int) vector[0];
+            assertHash(0, vector[1], vector[2], FOX.substring(0, length));
+        }
+    }
+
+    @Test
+    void encodesHashAsUrlSafeBase64() {
+        String text = "午饭 30 元";
+        long[] hash = Murmur3.hash128(text.getBytes(StandardCharsets.UTF_8), 0);
+        byte[] bytes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(hash[0]).putLong(hash[1]).array();
+
+        String encoded = Murmur3.hash128(text);
+        assertEquals(22, encoded.length());
+        assertArrayEquals(bytes, Base64.getUrlDecoder().decode(encoded));
+    }
+
+    private static void assertHash(int seed, long h1, long h2, String input) {
+        long[] hash = Murmur3.hash128(input.getBytes(StandardCharsets.US_ASCII), seed);
+        assertEquals(h1, hash[0], "h1 of \"" + input + "\"");
+        assertEquals(h2, hash[1], "h2 of \"" + input + "\"");
+    }
+}
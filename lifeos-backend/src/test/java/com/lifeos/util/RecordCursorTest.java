@@ -0,0 +1,35 @@
+package com.lifeos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordCursorTest {
+
+    @Test
+    void roundTrips() {
+        LocalDateTime recordTime = LocalDateTime.of(2026, 10, 14, 12, 30, 5);
+        RecordCursor.Position position = RecordCursor.decode(RecordCursor.encode(recordTime, 42));
+        assertEquals(recordTime, position.recordTime());
+        assertEquals(42, position.id());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> RecordCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> RecordCursor.decode("AAAA"));
+    }
+
+    @Test
+    void rejectsOutOfRangeEpoch() {
+        byte[] bytes = ByteBuffer.allocate(16).putLong(Long.MAX_VALUE).putLong(1).array();
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> RecordCursor.decode(cursor));
+        assertEquals("无效的分页游标", e.getMessage());
+    }
+}
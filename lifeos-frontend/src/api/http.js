@@ -8,7 +8,9 @@ const http = ky.create({
     beforeRequest: [
       (request) => {
         request.headers.set('Content-Type', 'application/json')
-        request.headers.set('Accept', 'application/json')
+        if (request.headers.get('Accept') !== 'text/event-stream') {
+          request.headers.set('Accept', 'application/json')
+        }
         
         // 添加认证头
         const userStore = useUserStore()
@@ -32,6 +34,40 @@ const http = ky.create({
   }
 })
 
+// 读取 SSE 响应，每个事件回调 onEvent(name, data)
+const readEventStream = async (response, onEvent) => {
+  const reader = response.body.pipeThrough(new TextDecoderStream()).getReader()
+  let buffer = ''
+  for (;;) {
+    const { value, done } = await reader.read()
+    if (done) break
+    buffer += value.replace(/\r\n/g, '\n')
+
+    let boundary
+    while ((boundary = buffer.indexOf('\n\n')) !== -1) {
+      const block = buffer.slice(0, boundary)
+      buffer = buffer.slice(boundary + 2)
+
+      let name = 'message'
+      const data = []
+      for (const line of block.split('\n')) {
+        if (line.startsWith('event:')) name = line.slice(6).trim()
+        else if (line.startsWith('data:')) data.push(line.slice(5))
+      }
+      if (data.length) onEvent(name, data.join('\n'))
+    }
+  }
+}
+
+const stream = async (path, onEvent, options = {}) => {
+  const response = await http(path, {
+    timeout: false,
+    ...options,
+    headers: { Accept: 'text/event-stream' }
+  })
+  await readEventStream(response, onEvent)
+}
+
 export const api = {
   // User APIs
   login: (username, password) =>
@@ -47,11 +83,23 @@ export const api = {
   track: (text, recordTime = null) =>
     http.post('track', { json: { text, recordTime } }).json(),
 
+  trackAsync: (text, recordTime = null) =>
+    http.post('track/async', { json: { text, recordTime } }).json(),
+
   query: (text) =>
     http.post('query', { json: { text } }).json(),
 
-  getRecords: () =>
-    http.get('records').json(),
+  // 流式查询，事件为 sql / rows / chunk / done / error
+  streamQuery: (text, onEvent) =>
+    stream('query/stream', onEvent, { method: 'post', json: { text } }),
+
+  // 分页获取记录：cursor 为上一页返回的 nextCursor，不传时取第一页
+  getRecords: (cursor = null, size = null) => {
+    const searchParams = {}
+    if (cursor) searchParams.cursor = cursor
+    if (size) searchParams.size = size
+    return http.get('records', { searchParams }).json()
+  },
 
   getRecordById: (id) =>
     http.get(`records/${id}`).json(),
@@ -84,6 +132,10 @@ export const api = {
   getMonthlyReport: () =>
     http.get('report/monthly').json(),
 
+  // 流式报告：type 为 weekly / monthly，事件为 chunk / done / error
+  streamReport: (type, onEvent) =>
+    stream(`report/${type}/stream`, onEvent),
+
   getCareMessage: () =>
     http.get('care').json()
 }
@@ -351,6 +351,8 @@ const defaultLlmConfig = {
   temperature: 0.7,
   maxTokens: 2000,
   useLocalRules: false,
+  // 大于 1 表示始终调用 LLM
+  localConfidenceThreshold: 0.8,
   useBackendConfig: true
 }
 
@@ -8,6 +8,11 @@ export const useTrackStore = defineStore('track', () => {
   const error = ref(null)
   const connectionStatus = ref('disconnected')
   const queryResult = ref('')
+  // 记录列表分页游标，为 null 表示已加载全部
+  const nextCursor = ref(null)
+  const isLoadingMore = ref(false)
+
+  const hasMoreRecords = computed(() => nextCursor.value !== null)
 
   const sortedRecords = computed(() => {
     return [...records.value].sort((a, b) => {
@@ -59,15 +64,70 @@ export const useTrackStore = defineStore('track', () => {
     }
   }
 
-  const fetchRecords = async () => {
+  // 流式查询：回答片段通过 onChunk 逐段返回，同时累积到 queryResult
+  const sendQueryStream = async (text, onChunk) => {
     isLoading.value = true
+    error.value = null
+    queryResult.value = ''
+    let streamError = null
+    
+    try {
+      await api.streamQuery(text, (event, data) => {
+        if (event === 'chunk') {
+          queryResult.value += data
+          onChunk?.(data)
+        } else if (event === 'error') {
+          streamError = data
+        }
+      })
+      if (streamError) {
+        throw new Error(streamError)
+      }
+      return { success: true, data: queryResult.value }
+    } catch (err) {
+      error.value = err.message
+      console.error('查询失败:', err)
+      return { success: false, error: err.message }
+    } finally {
+      isLoading.value = false
+    }
+  }
+
+  // 重新加载第一页
+  const fetchRecords = async () => {
+    nextCursor.value = null
+    return loadRecordPage(null)
+  }
+
+  // 追加下一页
+  const loadMoreRecords = async () => {
+    if (!nextCursor.value || isLoadingMore.value) {
+      return { success: true, data: [] }
+    }
+    isLoadingMore.value = true
+    try {
+      return await loadRecordPage(nextCursor.value)
+    } finally {
+      isLoadingMore.value = false
+    }
+  }
+
+  const loadRecordPage = async (cursor) => {
+    if (!cursor) isLoading.value = true
     
     try {
-      const response = await api.getRecords()
+      const response = await api.getRecords(cursor)
       
       if (response.success && response.data) {
-        records.value = response.data
-        return { success: true, data: response.data }
+        const { items, nextCursor: next } = response.data
+        if (cursor) {
+          const loaded = new Set(records.value.map(r => r.id))
+          records.value.push(...items.filter(r => !loaded.has(r.id)))
+        } else {
+          records.value = items
+        }
+        nextCursor.value = next
+        return { success: true, data: items }
       } else {
         throw new Error(response.message || '获取失败')
       }
@@ -76,7 +136,7 @@ export const useTrackStore = defineStore('track', () => {
       console.error('获取记录失败:', err)
       return { success: false, error: err.message }
     } finally {
-      isLoading.value = false
+      if (!cursor) isLoading.value = false
     }
   }
 
@@ -118,9 +178,13 @@ export const useTrackStore = defineStore('track', () => {
     connectionStatus,
     queryResult,
     sortedRecords,
+    hasMoreRecords,
+    isLoadingMore,
     sendText,
     sendQuery,
+    sendQueryStream,
     fetchRecords,
+    loadMoreRecords,
     deleteRecord,
     checkConnection
   }